@@ -10,26 +10,92 @@ import acm.io.IODialog;
 import acm.program.*;
 
 import java.awt.event.*;
+import java.io.IOException;
 import java.util.*;
 
 import javax.swing.*;
+import javax.swing.Timer;
 
 public class NameSurfer extends Program implements NameSurferConstants {
 
 	// instance variables of J Components
 	private JTextField textField;
-	private JButton graphButton, clearButton;
+	private JLabel renderRate;
+	private JButton graphButton, similarButton, clearButton;
+	private JComboBox<NameSurferDataSet> dataSetBox;
 	// Instance variables of objects of other classes
+	private NameSurferCatalog catalog;
 	private NameSurferDataBase base;
 	private NameSurferGraph graph;
+	private NameSurferSuggestions suggestions;
+	// loads data file of the shown dataset again when it is edited
+	private NameSurferReloader reloader;
 	// Instance variable of list, which stores names that have graphs on canvas
 	private List<String> namesOnGraph = new ArrayList<>();
 
 	// Constructor of this class
 	public NameSurfer() {
-		base = new NameSurferDataBase(NAMES_DATA_FILE);
+		catalog = readCatalog();
+		NameSurferDataSet first = catalog.getDataSets().get(0);
+		base = catalog.get(first.getName());
 		graph = new NameSurferGraph();
+		graph.setDataSet(first);
 		add(graph);
+		watchDataFile();
+	}
+
+	/*
+	 * Only the file of the shown dataset is watched, other loaded datasets
+	 * are reloaded when they are shown again after being dropped
+	 */
+	private void watchDataFile() {
+		if (reloader != null) {
+			reloader.close();
+		}
+		reloader = null;
+		try {
+			NameSurferReloader watching = new NameSurferReloader(base);
+			watching.addListener((newBase, changedNames) -> SwingUtilities
+					.invokeLater(() -> dataFileReloaded(watching, newBase, changedNames)));
+			reloader = watching;
+		} catch (IOException e) {
+			e.printStackTrace(); // program works, only without reloading
+		}
+	}
+
+	/*
+	 * Runs on Swing event thread, so nothing is in the middle of using the
+	 * old database. A reload of a dataset which is not shown anymore is
+	 * ignored
+	 */
+	private void dataFileReloaded(NameSurferReloader source, NameSurferDataBase newBase, Set<String> changedNames) {
+		if (source != reloader) {
+			return;
+		}
+		catalog.replace(base.getDataSet().getName(), base, newBase);
+		base = newBase;
+		suggestions.setDataBase(base);
+		graph.reloadEntries(base, changedNames);
+		namesOnGraph.removeIf(name -> base.findEntry(name) == null);
+	}
+
+	/*
+	 * Reads list of datasets. If it can't be read, bundled names-data.txt is
+	 * the only dataset
+	 */
+	private NameSurferCatalog readCatalog() {
+		// keep loaded datasets in at most half of heap
+		NameSurferCatalog catalog = new NameSurferCatalog(NameSurferLoadMode.SNAPSHOT, MAX_LOADED_DATASETS,
+				Runtime.getRuntime().maxMemory() / 2);
+		try {
+			catalog.read(DATASETS_FILE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (catalog.getDataSets().isEmpty()) {
+			catalog.add(NameSurferDataSet.DEFAULT);
+		}
+		return catalog;
 	}
 
 	/* Method: init() */
@@ -48,12 +114,32 @@ public class NameSurfer extends Program implements NameSurferConstants {
 	private void addJComponents() {
 		add(new JLabel("Name"), SOUTH); // we don't need its instance
 		textField = new JTextField(20);
+		suggestions = new NameSurferSuggestions(textField, base); // type-ahead
 		add(textField, SOUTH);
 		graphButton = new JButton("Graph");
 		add(graphButton, SOUTH);
 		textField.addActionListener(this); // pressing enter will work too
+		similarButton = new JButton("Similar");
+		add(similarButton, SOUTH);
 		clearButton = new JButton("Clear");
 		add(clearButton, SOUTH);
+		showRenderRate();
+		List<NameSurferDataSet> dataSets = catalog.getDataSets();
+		if (dataSets.size() > 1) { // nothing to choose from otherwise
+			dataSetBox = new JComboBox<>(dataSets.toArray(new NameSurferDataSet[0]));
+			dataSetBox.addActionListener(this);
+			add(dataSetBox, SOUTH);
+		}
+	}
+
+	/*
+	 * Shows how many times graph was redrawn during the last second, so slow
+	 * redraws while resizing can be seen
+	 */
+	private void showRenderRate() {
+		renderRate = new JLabel("0 redraws/s");
+		add(renderRate, SOUTH);
+		new Timer(RENDER_RATE_INTERVAL, e -> renderRate.setText(graph.getRendersPerSecond() + " redraws/s")).start();
 	}
 
 	/* Method: actionPerformed(e) */
@@ -62,42 +148,107 @@ public class NameSurfer extends Program implements NameSurferConstants {
 	 * you will have to define a method to respond to button actions.
 	 */
 	public void actionPerformed(ActionEvent e) {
+		if (isStillLoading(e.getSource())) {
+			getDialog().println("Names are still loading, try again in a moment");
+			return; // text stays, so user can just press enter again
+		}
 		// Pressing enter or graph button can both work
 		if (e.getSource() == graphButton || e.getSource() == textField) {
 			displayName();
+		} else if (e.getSource() == similarButton) {
+			displaySimilarNames();
 		} else if (e.getSource() == clearButton) {
 			graph.clear();
 			namesOnGraph.clear(); // reset list
+		} else if (e.getSource() == dataSetBox) {
+			switchDataSet((NameSurferDataSet) dataSetBox.getSelectedItem());
 		}
 		textField.setText(""); // we reset textField
 	}
 
+	/*
+	 * Database of a dataset is loaded in background. Names can be looked up
+	 * as soon as they are read, similar curves need whole database
+	 */
+	private boolean isStillLoading(Object source) {
+		if (source == similarButton) {
+			return !base.isLoaded();
+		}
+		if (source == graphButton || source == textField) {
+			return !base.isNamesLoaded();
+		}
+		return false;
+	}
+
 	private void displayName() {
 		// initialize it for user-related communication
 		IODialog dialog = getDialog();
 		// I turn name into lowerCase to handle case-sensitivity
 		// And I also trim it to avoid unnecessary void spaces
 		String name = textField.getText().toLowerCase().trim();
-		if (validNameEntered()) { // if name is in base
-			displayGraph(name, dialog);
+		// we look name up only once, null means it is not in base
+		NameSurferEntry entry = base.findEntry(name);
+		if (entry != null) { // if name is in base
+			displayGraph(name, entry, dialog);
 		} else {
-			dialog.showErrorMessage("Invalid name");
+			dialog.showErrorMessage(invalidNameMessage(name));
+		}
+	}
+
+	/*
+	 * Shows another dataset. Its database is loaded if it is not in memory,
+	 * and names of previous dataset are removed from graph
+	 */
+	private void switchDataSet(NameSurferDataSet dataSet) {
+		base = catalog.get(dataSet.getName());
+		suggestions.setDataBase(base);
+		graph.setDataSet(dataSet);
+		namesOnGraph.clear();
+		watchDataFile();
+	}
+
+	/*
+	 * Adds the name and names whose curves have the most similar shape to it
+	 */
+	private void displaySimilarNames() {
+		IODialog dialog = getDialog();
+		String name = textField.getText().toLowerCase().trim();
+		NameSurferEntry entry = base.findEntry(name);
+		if (entry == null) {
+			dialog.showErrorMessage(invalidNameMessage(name));
+			return;
+		}
+		if (!namesOnGraph.contains(name)) {
+			displayGraph(name, entry, dialog);
+		}
+		for (NameSurferEntry similar : base.findSimilarCurves(name, SIMILAR_NAMES, NameSurferDistance.CORRELATION)) {
+			String similarName = similar.getName().toLowerCase();
+			if (!namesOnGraph.contains(similarName)) {
+				displayGraph(similarName, similar, dialog);
+			}
 		}
 	}
 
-	private boolean validNameEntered() {
-		return base.findEntry(textField.getText().toLowerCase().trim()) != null;
+	/*
+	 * If user made a typo, we tell which names could have been meant
+	 */
+	private String invalidNameMessage(String name) {
+		List<String> similarNames = base.findSimilarNames(name, FUZZY_SUGGESTIONS);
+		if (similarNames.isEmpty()) {
+			return "Invalid name";
+		}
+		return "Invalid name. Did you mean " + String.join(", ", similarNames) + "?";
 	}
 
 	/*
 	 * This method will display graph on canvas, if it is not already displayed.
 	 * If it is already there, user will receive specific message
 	 */
-	private void displayGraph(String name, IODialog dialog) {
+	private void displayGraph(String name, NameSurferEntry entry, IODialog dialog) {
 		if (namesOnGraph.contains(name)) {
 			dialog.println("Name is already on graph");
 		} else {
-			graph.addEntry(base.findEntry(name));
+			graph.addEntry(entry);
 			namesOnGraph.add(name);
 		}
 	}
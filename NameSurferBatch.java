@@ -0,0 +1,148 @@
+/*
+ * File: NameSurferBatch.java
+ * --------------------------
+ * This program resolves a big file of names to their ranks. Names
+ * in the input are separated by new lines, spaces or commas. The
+ * input is read in pieces of about a megabyte (cut only between
+ * names, even in a long comma separated line), which are looked up
+ * on several threads with NameSurferDataBase.findRanks, and the
+ * answers are written in the order of the input, one line per
+ * found name in the format of names-data.txt ("Name r1 ... rN").
+ * Names which are not in the database are left out and counted.
+ * At the end it prints how many names per second were resolved.
+ * Run it with
+ * java NameSurferBatch inputFile [outputFile] [threads] [dataFile]
+ * where "-" as inputFile or outputFile means standard input or
+ * output.
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class NameSurferBatch implements NameSurferConstants {
+
+	// bytes of input read at once
+	private static final int CHUNK = 1 << 20;
+
+	/*
+	 * Answer for one piece of input
+	 */
+	private static class Chunk {
+		private byte[] output;
+		private int names;
+		private int found;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("usage: java NameSurferBatch inputFile [outputFile] [threads] [dataFile]");
+			System.exit(2);
+		}
+		String output = (args.length > 1) ? args[1] : "-";
+		int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		String dataFile = (args.length > 3) ? args[3] : NAMES_DATA_FILE;
+		NameSurferDataBase base = new NameSurferDataBase(dataFile, NameSurferLoadMode.PARALLEL, threads);
+		System.err.printf("loaded %d names in %.0f ms%n", base.size(), base.getLoadTimeMillis());
+		try (InputStream in = args[0].equals("-") ? System.in : new FileInputStream(args[0]);
+				OutputStream out = new BufferedOutputStream(
+						output.equals("-") ? System.out : new FileOutputStream(output), 1 << 16)) {
+			resolve(base, in, out, threads);
+		}
+	}
+
+	/*
+	 * Reads pieces of input which end between two names, and keeps at most
+	 * two pieces per thread in flight, so memory doesn't depend on the size of
+	 * the input
+	 */
+	private static void resolve(NameSurferDataBase base, InputStream in, OutputStream out, int threads)
+			throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Deque<Future<Chunk>> pending = new ArrayDeque<>();
+		long names = 0;
+		long found = 0;
+		long start = System.nanoTime();
+		byte[] buffer = new byte[CHUNK];
+		int filled = 0;
+		while (true) {
+			int read = in.read(buffer, filled, buffer.length - filled);
+			if (read > 0) {
+				filled += read;
+				if (filled < buffer.length) {
+					continue; // piece is not full yet
+				}
+			}
+			// the piece ends after the last separator, rest goes to next piece
+			int end = filled;
+			if (read > 0) {
+				end = lastSeparatorEnd(buffer, filled);
+				if (end == 0) { // one name fills the whole buffer, it must not be cut
+					buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+					continue;
+				}
+			}
+			String text = new String(buffer, 0, end, StandardCharsets.UTF_8);
+			pending.add(pool.submit(() -> lookUp(base, text)));
+			System.arraycopy(buffer, end, buffer, 0, filled - end);
+			filled -= end;
+			while (pending.size() > 2 * threads || (read < 0 && !pending.isEmpty())) {
+				Chunk chunk = pending.removeFirst().get();
+				out.write(chunk.output);
+				names += chunk.names;
+				found += chunk.found;
+			}
+			if (read < 0) {
+				break;
+			}
+		}
+		pool.shutdown();
+		out.flush();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.printf("%d names, %d found, %d not found, %.2f s, %.0f names/s on %d threads%n", names, found,
+				names - found, seconds, names / seconds, threads);
+	}
+
+	/*
+	 * Returns position right after the last new line of buffer or, if a line
+	 * is longer than buffer, after its last space or comma. Those are single
+	 * bytes in UTF-8 too, so neither a name nor a letter is ever cut. Returns
+	 * 0 if there is no separator at all
+	 */
+	private static int lastSeparatorEnd(byte[] buffer, int filled) {
+		for (int end = filled; end > 0; end--) {
+			if (buffer[end - 1] == '\n') {
+				return end;
+			}
+		}
+		for (int end = filled; end > 0; end--) {
+			byte b = buffer[end - 1];
+			if (b == ' ' || b == ',' || b == '\t' || b == '\r') {
+				return end;
+			}
+		}
+		return 0;
+	}
+
+	/*
+	 * Looks up all names of the text and writes found ones into one string,
+	 * so nothing is allocated per name
+	 */
+	private static Chunk lookUp(NameSurferDataBase base, String text) {
+		Chunk chunk = new Chunk();
+		StringBuilder result = new StringBuilder(text.length() * 4);
+		chunk.found = base.findRanks(text, (names, start, end, ranks) -> {
+			chunk.names++;
+			if (ranks != null) {
+				result.append(names, start, end);
+				for (int rank : ranks) {
+					result.append(' ').append(rank);
+				}
+				result.append('\n');
+			}
+		});
+		chunk.output = result.toString().getBytes(StandardCharsets.UTF_8);
+		return chunk;
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * File: NameSurferBenchmark.java
+ * ------------------------------
+ * This program measures how fast the parts of NameSurfer work on
+ * big data files. It writes a synthetic file in the same format
+ * as names-data.txt ("Name r1 r2 ... rN"), with as many names as
+ * the first argument says (default is 500000), and then prints
+ * timings. It is a plain program, run it with
+ * java NameSurferBenchmark [numberOfNames]
+ */
+
+import java.io.*;
+import java.util.*;
+
+public class NameSurferBenchmark implements NameSurferConstants {
+
+	// how many times every measurement is repeated
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws IOException {
+		int numberOfNames = (args.length > 0) ? Integer.parseInt(args[0]) : 500000;
+		File file = File.createTempFile("names-benchmark", ".txt");
+		file.deleteOnExit();
+		new File(file.getPath() + ".snap").deleteOnExit(); // written by SNAPSHOT mode
+		writeSyntheticFile(file, numberOfNames);
+		System.out.println(numberOfNames + " names, " + file.length() / 1024 + " KB");
+		compareLoadModes(file.getPath());
+		NameSurferDataBase base = new NameSurferDataBase(file.getPath(), NameSurferLoadMode.MAPPED);
+		measureSuggestions(base, numberOfNames);
+		measureTrends(base);
+		measureSimilarCurves(base, numberOfNames);
+		measureFuzzyLookups(numberOfNames);
+	}
+
+	/*
+	 * Measures search of names with similar rank curves, for both distances.
+	 * First query builds the vectors, it is not measured
+	 */
+	private static void measureSimilarCurves(NameSurferDataBase base, int numberOfNames) {
+		for (NameSurferDistance distance : NameSurferDistance.values()) {
+			base.findSimilarCurves(syntheticName(0), SIMILAR_NAMES, distance);
+			Random random = new Random(13);
+			int queries = 20;
+			long start = System.nanoTime();
+			for (int i = 0; i < queries; i++) {
+				base.findSimilarCurves(syntheticName(random.nextInt(numberOfNames)), SIMILAR_NAMES, distance);
+			}
+			double millis = (System.nanoTime() - start) / 1e6 / queries;
+			System.out.printf("similar  %10.2f ms per query (%s)%n", millis, distance);
+		}
+	}
+
+	/*
+	 * Measures computing trends of all names and then risers and fallers
+	 * between the first and the last decade
+	 */
+	private static void measureTrends(NameSurferDataBase base) {
+		long start = System.nanoTime();
+		NameSurferTrends trends = base.getTrends();
+		double buildMillis = (System.nanoTime() - start) / 1e6;
+		double best = Double.MAX_VALUE;
+		for (int i = 0; i < ROUNDS; i++) {
+			start = System.nanoTime();
+			trends.risers(0, NDECADES - 1, TOP_NAMES);
+			trends.fallers(0, NDECADES - 1, TOP_NAMES);
+			best = Math.min(best, (System.nanoTime() - start) / 1e6);
+		}
+		System.out.printf("trends   %10.1f ms to compute, %.1f ms for risers and fallers%n", buildMillis, best);
+	}
+
+	/*
+	 * Measures similar name search on 1/100, 1/10 and all of the names, so we
+	 * can see how query time grows with number of names
+	 */
+	private static void measureFuzzyLookups(int numberOfNames) throws IOException {
+		for (int size = Math.max(1, numberOfNames / 100); size <= numberOfNames; size *= 10) {
+			File file = File.createTempFile("names-fuzzy", ".txt");
+			file.deleteOnExit();
+			writeSyntheticFile(file, size);
+			NameSurferDataBase base = new NameSurferDataBase(file.getPath(), NameSurferLoadMode.MAPPED);
+			base.findSimilarNames("", 1); // builds index, we don't measure that
+			Random random = new Random(11);
+			int queries = 2000;
+			long start = System.nanoTime();
+			for (int i = 0; i < queries; i++) {
+				String name = syntheticName(random.nextInt(size));
+				base.findSimilarNames(typo(name, random), FUZZY_SUGGESTIONS);
+			}
+			double micros = (System.nanoTime() - start) / 1e3 / queries;
+			System.out.printf("fuzzy    %10.2f us per lookup on %d names%n", micros, size);
+			file.delete();
+		}
+	}
+
+	/*
+	 * Replaces one letter of name with a random one
+	 */
+	private static String typo(String name, Random random) {
+		char[] letters = name.toCharArray();
+		letters[random.nextInt(letters.length)] = (char) ('a' + random.nextInt(26));
+		return new String(letters);
+	}
+
+	/*
+	 * Measures how long suggestions take for prefixes of 1 to 4 letters, which
+	 * is what user types before seeing a suggestion list
+	 */
+	private static void measureSuggestions(NameSurferDataBase base, int numberOfNames) {
+		Random random = new Random(7);
+		int queries = 100000;
+		long start = System.nanoTime();
+		int found = 0;
+		for (int i = 0; i < queries; i++) {
+			String name = syntheticName(random.nextInt(numberOfNames));
+			String prefix = name.substring(0, 1 + random.nextInt(Math.min(4, name.length())));
+			found += base.suggest(prefix, SUGGESTIONS).size();
+		}
+		double micros = (System.nanoTime() - start) / 1e3 / queries;
+		System.out.printf("suggest  %10.2f us per prefix (%d names found)%n", micros, found);
+	}
+
+	/*
+	 * Loads the same file with every load mode, so readers can be compared.
+	 * First SNAPSHOT round writes the snapshot, the best round reads it
+	 */
+	private static void compareLoadModes(String filename) {
+		for (NameSurferLoadMode mode : NameSurferLoadMode.values()) {
+			double best = Double.MAX_VALUE;
+			Map<String, Double> phases = null;
+			for (int i = 0; i < ROUNDS; i++) {
+				NameSurferDataBase base = new NameSurferDataBase(filename, mode);
+				if (base.getLoadTimeMillis() < best) {
+					best = base.getLoadTimeMillis();
+					phases = base.getPhaseMillis();
+				}
+			}
+			System.out.printf("load %-8s %10.1f ms  %s%n", mode, best, phasesToString(phases));
+		}
+	}
+
+	private static String phasesToString(Map<String, Double> phases) {
+		StringBuilder result = new StringBuilder();
+		for (Map.Entry<String, Double> phase : phases.entrySet()) {
+			result.append(String.format("%s %.1f ms  ", phase.getKey(), phase.getValue()));
+		}
+		return result.toString().trim();
+	}
+
+	/* Method: writeSyntheticFile(file, numberOfNames) */
+	/**
+	 * Writes a data file with random names and ranks. About half of the ranks
+	 * are 0, just like in the real data file.
+	 */
+	public static void writeSyntheticFile(File file, int numberOfNames) throws IOException {
+		Random random = new Random(42);
+		try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+			for (int i = 0; i < numberOfNames; i++) {
+				StringBuilder line = new StringBuilder(syntheticName(i));
+				for (int j = 0; j < NDECADES; j++) {
+					int rank = random.nextBoolean() ? 0 : 1 + random.nextInt(MAX_RANK);
+					line.append(' ').append(rank);
+				}
+				writer.println(line);
+			}
+		}
+	}
+
+	/* Method: syntheticName(i) */
+	/**
+	 * Returns a different pronounceable-ish name for every number.
+	 */
+	public static String syntheticName(int i) {
+		String consonants = "bcdfghjklmnprstvz";
+		String vowels = "aeiou";
+		StringBuilder name = new StringBuilder();
+		do {
+			name.append(consonants.charAt(i % consonants.length()));
+			i /= consonants.length();
+			name.append(vowels.charAt(i % vowels.length()));
+			i /= vowels.length();
+		} while (i > 0);
+		name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+		return name.toString();
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * File: NameSurferCatalog.java
+ * ----------------------------
+ * This class keeps the list of datasets the program can show (for
+ * example one per region and per gender) and loads a database only
+ * when somebody asks for it. Loaded databases stay in memory, but
+ * only a limited number of them and only while they fit in a
+ * memory budget; when there is no more room, the one which was
+ * used the longest time ago is dropped and will be loaded again if
+ * it is needed later. Databases are loaded in the background, and
+ * their memory is counted once they are completely loaded.
+ *
+ * A catalog file has one dataset per line:
+ *   name  file  firstYear  yearsBetweenColumns  columns
+ * Empty lines and lines starting with '#' are skipped.
+ */
+
+import java.io.*;
+import java.util.*;
+
+public class NameSurferCatalog {
+
+	/* Instance variables */
+	// all known datasets, in the order they were added
+	private Map<String, NameSurferDataSet> dataSets = new LinkedHashMap<>();
+	// loaded databases, the least recently used one first
+	private LinkedHashMap<String, NameSurferDataBase> loaded = new LinkedHashMap<>(16, 0.75f, true);
+	// how databases are read
+	private NameSurferLoadMode mode;
+	// most databases kept in memory at once
+	private int maxLoaded;
+	// most bytes loaded databases may take together
+	private long maxBytes;
+	// bytes every loaded database took when it was loaded, estimated
+	private Map<NameSurferDataBase, Long> bytesOf = new HashMap<>();
+	// sum of bytesOf
+	private long loadedBytes;
+
+	/**
+	 * Creates an empty catalog which keeps at most maxLoaded databases, and
+	 * no more than maxBytes of them, in memory. The database which was used
+	 * last is always kept, even if it alone is bigger than maxBytes.
+	 */
+	public NameSurferCatalog(NameSurferLoadMode mode, int maxLoaded, long maxBytes) {
+		this.mode = mode;
+		this.maxLoaded = Math.max(1, maxLoaded);
+		this.maxBytes = maxBytes;
+	}
+
+	/* Method: add(dataSet) */
+	/**
+	 * Adds a dataset to the catalog. A dataset with the same name is
+	 * replaced, and its database is dropped if it was loaded.
+	 */
+	public synchronized void add(NameSurferDataSet dataSet) {
+		dataSets.put(dataSet.getName(), dataSet);
+		unload(dataSet.getName());
+	}
+
+	/* Method: read(filename) */
+	/**
+	 * Adds all datasets listed in a catalog file. Files in it are relative to
+	 * the directory of the catalog file.
+	 */
+	public void read(String filename) throws IOException {
+		File directory = new File(filename).getAbsoluteFile().getParentFile();
+		try (BufferedReader buf = new BufferedReader(new FileReader(filename))) {
+			int lineNumber = 0;
+			while (true) {
+				String line = buf.readLine();
+				if (line == null) {
+					break;
+				}
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] values = line.split("\\s+");
+				if (values.length != 5 && values.length != 6) {
+					throw new IOException(
+							filename + ":" + lineNumber + ": expected 5 or 6 values, found " + values.length);
+				}
+				File file = new File(values[1]);
+				if (!file.isAbsolute()) {
+					file = new File(directory, values[1]);
+				}
+				try {
+					// max rank is optional, by default it is the one of names-data.txt
+					int maxRank = (values.length == 6) ? Integer.parseInt(values[5])
+							: NameSurferDataSet.DEFAULT.getMaxRank();
+					add(new NameSurferDataSet(values[0], file.getPath(), Integer.parseInt(values[2]),
+							Integer.parseInt(values[3]), Integer.parseInt(values[4]), maxRank));
+				} catch (IllegalArgumentException e) { // NumberFormatException is one too
+					throw new IOException(filename + ":" + lineNumber + ": " + e.getMessage(), e);
+				}
+			}
+		}
+	}
+
+	/* Method: getDataSets() */
+	/**
+	 * Returns all datasets of the catalog, in the order they were added.
+	 */
+	public synchronized List<NameSurferDataSet> getDataSets() {
+		return new ArrayList<>(dataSets.values());
+	}
+
+	/* Method: get(name) */
+	/**
+	 * Returns the database of the dataset with this name. If it is not in
+	 * memory, it starts loading in the background and is returned right away,
+	 * see NameSurferDataBase.loadInBackground. Returns null if there is no
+	 * such dataset.
+	 */
+	public synchronized NameSurferDataBase get(String name) {
+		NameSurferDataBase base = loaded.get(name); // also marks it as used now
+		if (base != null) {
+			return base;
+		}
+		NameSurferDataSet dataSet = dataSets.get(name);
+		if (dataSet == null) {
+			return null;
+		}
+		base = NameSurferDataBase.loadInBackground(dataSet, mode);
+		loaded.put(name, base);
+		evict();
+		NameSurferDataBase newBase = base;
+		base.whenLoaded(() -> countMemory(newBase));
+		return base;
+	}
+
+	/*
+	 * Adds memory of a database which finished loading, unless it was dropped
+	 * meanwhile
+	 */
+	private synchronized void countMemory(NameSurferDataBase base) {
+		if (loaded.containsValue(base)) {
+			bytesOf.put(base, base.estimateMemory());
+			loadedBytes += bytesOf.get(base);
+			evict();
+		}
+	}
+
+	/*
+	 * Drops least recently used databases until there are not too many of
+	 * them and they fit in the budget. The newest one is never dropped
+	 */
+	private void evict() {
+		Iterator<NameSurferDataBase> iterator = loaded.values().iterator();
+		while (loaded.size() > 1 && (loaded.size() > maxLoaded || loadedBytes > maxBytes)) {
+			forget(iterator.next());
+			iterator.remove();
+		}
+	}
+
+	/* Method: replace(name, old, base) */
+	/**
+	 * Puts base in place of old database of the dataset, after its file was
+	 * reloaded. Nothing happens if old is not the loaded database of the
+	 * dataset anymore.
+	 */
+	public synchronized void replace(String name, NameSurferDataBase old, NameSurferDataBase base) {
+		if (loaded.get(name) != old) {
+			return;
+		}
+		forget(old);
+		loaded.put(name, base);
+		base.whenLoaded(() -> countMemory(base));
+	}
+
+	/* Method: unload(name) */
+	/**
+	 * Drops the database of the dataset from memory, if it is loaded.
+	 */
+	public synchronized void unload(String name) {
+		NameSurferDataBase base = loaded.remove(name);
+		if (base != null) {
+			forget(base);
+		}
+	}
+
+	/*
+	 * Stops counting memory of the database, if it was counted
+	 */
+	private void forget(NameSurferDataBase base) {
+		Long bytes = bytesOf.remove(base);
+		if (bytes != null) {
+			loadedBytes -= bytes;
+		}
+	}
+
+	/* Method: isLoaded(name) */
+	/**
+	 * Returns true if the database of the dataset is in memory now.
+	 */
+	public synchronized boolean isLoaded(String name) {
+		return loaded.containsKey(name);
+	}
+
+	/* Method: getLoadedBytes() */
+	/**
+	 * Returns roughly how many bytes the loaded databases take together.
+	 * Databases which are still loading are not counted yet.
+	 */
+	public synchronized long getLoadedBytes() {
+		return loadedBytes;
+	}
+}
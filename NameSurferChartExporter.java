@@ -0,0 +1,342 @@
+/*
+ * File: NameSurferChartExporter.java
+ * ----------------------------------
+ * This program draws charts without showing any window, so they can
+ * be made for every name of the database at once. For every name it
+ * writes the line graph NameSurferGraph would show and the bar chart
+ * of NameSurferGraphExtension, and for every decade (every column
+ * of the dataset) the year chart of its most popular names. All
+ * charts go through NameSurferLayout, so datasets with more columns
+ * than pixels are thinned out the same way as on screen. Charts are
+ * PNG or SVG files and are drawn on a pool of threads, every thread
+ * reuses its own image.
+ * Run it with
+ * java NameSurferChartExporter outputDirectory [png|svg] [threads] [dataFile]
+ */
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+public class NameSurferChartExporter implements NameSurferConstants {
+
+	// number of names one task draws
+	private static final int BATCH_SIZE = 256;
+
+	/* Instance variables */
+	private NameSurferDataBase base;
+	private File outputDirectory;
+	// true for SVG, false for PNG
+	private boolean svg;
+	private int threads;
+	// number of written charts, all threads add to it
+	private AtomicInteger charts = new AtomicInteger();
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: java NameSurferChartExporter outputDirectory [png|svg] [threads] [dataFile]");
+			return;
+		}
+		boolean svg = args.length > 1 && args[1].equalsIgnoreCase("svg");
+		int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		String dataFile = (args.length > 3) ? args[3] : NAMES_DATA_FILE;
+		System.setProperty("java.awt.headless", "true");
+		ImageIO.setUseCache(false); // PNGs are small, temporary files only slow writing down
+		NameSurferDataBase base = new NameSurferDataBase(dataFile, NameSurferLoadMode.PARALLEL);
+		NameSurferChartExporter exporter = new NameSurferChartExporter(base, new File(args[0]), svg, threads);
+		long start = System.nanoTime();
+		int count = exporter.exportAll();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d charts in %.1f s, %.0f charts/second%n", count, seconds, count / seconds);
+	}
+
+	/**
+	 * Creates an exporter which writes charts of the database into directory.
+	 */
+	public NameSurferChartExporter(NameSurferDataBase base, File outputDirectory, boolean svg, int threads) {
+		this.base = base;
+		this.outputDirectory = outputDirectory;
+		this.svg = svg;
+		this.threads = Math.max(1, threads);
+	}
+
+	/* Method: exportAll() */
+	/**
+	 * Writes all charts and returns how many were written. Names go to
+	 * "names" and "bars" subdirectories, decades go to "years".
+	 */
+	public int exportAll() throws IOException, InterruptedException {
+		File names = directory("names");
+		File bars = directory("bars");
+		File years = directory("years");
+		List<NameSurferEntry> entries = base.getAllEntries();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ThreadLocal<ChartPainter> painters = ThreadLocal.withInitial(this::newPainter);
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int from = 0; from < entries.size(); from += BATCH_SIZE) {
+			List<NameSurferEntry> batch = entries.subList(from, Math.min(entries.size(), from + BATCH_SIZE));
+			tasks.add(() -> {
+				ChartPainter painter = painters.get();
+				for (NameSurferEntry entry : batch) {
+					drawLineChart(painter, entry);
+					save(painter, names, entry.getName());
+					drawBarChart(painter, entry);
+					save(painter, bars, entry.getName());
+				}
+				return null;
+			});
+		}
+		NameSurferDataSet dataSet = base.getDataSet();
+		for (int i = 0; i < dataSet.getColumns(); i++) {
+			int year = dataSet.yearOf(i);
+			tasks.add(() -> {
+				ChartPainter painter = painters.get();
+				drawYearChart(painter, year);
+				save(painter, years, String.valueOf(year));
+				return null;
+			});
+		}
+		try {
+			for (Future<Void> future : pool.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IOException("Could not export charts", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		return charts.get();
+	}
+
+	private File directory(String name) throws IOException {
+		File directory = new File(outputDirectory, name);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create " + directory);
+		}
+		return directory;
+	}
+
+	private ChartPainter newPainter() {
+		return svg ? new SvgPainter() : new PngPainter();
+	}
+
+	/*
+	 * Names can have letters which are not welcome in file names
+	 */
+	private void save(ChartPainter painter, File directory, String name) throws IOException {
+		String fileName = name.replaceAll("[^A-Za-z0-9_-]", "_") + (svg ? ".svg" : ".png");
+		painter.save(new File(directory, fileName));
+		charts.incrementAndGet();
+	}
+
+	/*
+	 * Same graph as NameSurferGraph draws for one name
+	 */
+	private void drawLineChart(ChartPainter painter, NameSurferEntry entry) {
+		NameSurferLayout layout = new NameSurferLayout(APPLICATION_WIDTH, APPLICATION_HEIGHT, base.getDataSet());
+		drawOutline(painter, layout, true);
+		Color color = NameSurferLayout.chooseColor(0);
+		int[] points = layout.pointColumns(entry);
+		for (int i = 0; i + 1 < points.length; i++) { // we don't need line after last point
+			painter.line(layout.xForDecade(points[i]), layout.yForRank(entry.getRank(points[i])),
+					layout.xForDecade(points[i + 1]), layout.yForRank(entry.getRank(points[i + 1])), color);
+		}
+		for (int column : layout.labelColumns()) {
+			painter.text(NameSurferLayout.labelOf(entry, column), layout.xForDecade(column) + COORDINATE_SENSITIVITY,
+					layout.yForRank(entry.getRank(column)), color, 12);
+		}
+	}
+
+	/*
+	 * Same chart as "Name Chart" of NameSurferGraphExtension, column for every
+	 * labelled decade (year) and rank on top
+	 */
+	private void drawBarChart(ChartPainter painter, NameSurferEntry entry) {
+		NameSurferLayout layout = new NameSurferLayout(APPLICATION_WIDTH, APPLICATION_HEIGHT, base.getDataSet());
+		drawOutline(painter, layout, true);
+		Color color = NameSurferLayout.chooseColor(2);
+		for (int column : layout.labelColumns()) {
+			int rank = entry.getRank(column);
+			double x = layout.xForDecade(column);
+			drawColumn(painter, layout, rank, color, x, layout.barWidth());
+			painter.text("" + rank, x + 6 * COORDINATE_SENSITIVITY, -COORDINATE_SENSITIVITY + GRAPH_MARGIN_SIZE,
+					color, 24);
+		}
+	}
+
+	/*
+	 * Same chart as "Year Chart" of NameSurferGraphExtension, most popular
+	 * names of the year sorted by rank
+	 */
+	private void drawYearChart(ChartPainter painter, int year) {
+		NameSurferLayout layout = new NameSurferLayout(APPLICATION_WIDTH, APPLICATION_HEIGHT, base.getDataSet());
+		drawOutline(painter, layout, false);
+		Color color = NameSurferLayout.chooseColor(1);
+		int decade = base.getDataSet().columnOf(year);
+		int slotWidth = APPLICATION_WIDTH / TOP_NAMES;
+		NameSurferEntry[] topNames = base.getTopNames(year);
+		for (int j = 0; j < topNames.length; j++) {
+			int rank = topNames[j].getRank(decade);
+			int x = j * slotWidth;
+			drawColumn(painter, layout, rank, color, x, layout.barWidth(TOP_NAMES));
+			painter.text(topNames[j].getName().toLowerCase(), x + 2 * COORDINATE_SENSITIVITY,
+					-COORDINATE_SENSITIVITY + GRAPH_MARGIN_SIZE, color, 12);
+			painter.text("#" + rank, x + 6 * COORDINATE_SENSITIVITY, APPLICATION_HEIGHT / 2, Color.WHITE, 25);
+		}
+		painter.text("" + year, APPLICATION_WIDTH / 2 - 30, APPLICATION_HEIGHT - COORDINATE_SENSITIVITY, color, 31);
+	}
+
+	private void drawColumn(ChartPainter painter, NameSurferLayout layout, int rank, Color color, double x,
+			double barWidth) {
+		if (rank != 0) {
+			double height = layout.barHeight(rank);
+			painter.rect(COORDINATE_SENSITIVITY + x, APPLICATION_HEIGHT - GRAPH_MARGIN_SIZE - height, barWidth,
+					height, color);
+		}
+	}
+
+	/*
+	 * Horizontal lines, vertical lines and (if years is true) year labels at
+	 * labelled columns. Without years, columns are TOP_NAMES names of a year
+	 * chart
+	 */
+	private void drawOutline(ChartPainter painter, NameSurferLayout layout, boolean years) {
+		int width = layout.getWidth();
+		int height = layout.getHeight();
+		painter.begin(width, height);
+		painter.line(0, GRAPH_MARGIN_SIZE, width, GRAPH_MARGIN_SIZE, Color.BLACK); // top
+		painter.line(0, height - GRAPH_MARGIN_SIZE, width, height - GRAPH_MARGIN_SIZE, Color.BLACK); // bottom
+		if (!years) {
+			for (int i = 0; i < TOP_NAMES; i++) {
+				double x = i * (width / TOP_NAMES);
+				painter.line(x, 0, x, height, Color.BLACK);
+			}
+			return;
+		}
+		for (int column : layout.labelColumns()) {
+			double x = layout.xForDecade(column);
+			painter.line(x, 0, x, height, Color.BLACK);
+			painter.text(layout.yearLabel(column), x + COORDINATE_SENSITIVITY, height - COORDINATE_SENSITIVITY,
+					Color.BLACK, 12);
+		}
+	}
+
+	/*
+	 * Charts are drawn with these few operations, so the same code can write
+	 * both PNG and SVG files
+	 */
+	private interface ChartPainter {
+		void begin(int width, int height);
+
+		void line(double x1, double y1, double x2, double y2, Color color);
+
+		void rect(double x, double y, double width, double height, Color color);
+
+		void text(String text, double x, double y, Color color, int size);
+
+		void save(File file) throws IOException;
+	}
+
+	/*
+	 * Draws into an image, which is created once and then only cleared for
+	 * every chart. PNG writer is reused too, and it compresses fast rather
+	 * than small, compression took most of the time
+	 */
+	private static class PngPainter implements ChartPainter {
+		private BufferedImage image;
+		private Graphics2D g;
+		private ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+		private ImageWriteParam param = writer.getDefaultWriteParam();
+		// fonts by size, so they are not created for every label
+		private Map<Integer, Font> fonts = new HashMap<>();
+
+		private PngPainter() {
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(0.9f); // higher quality means faster and bigger here
+		}
+
+		public void begin(int width, int height) {
+			if (image == null || image.getWidth() != width || image.getHeight() != height) {
+				image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+				g = image.createGraphics();
+			}
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, width, height);
+		}
+
+		public void line(double x1, double y1, double x2, double y2, Color color) {
+			g.setColor(color);
+			g.drawLine((int) x1, (int) y1, (int) x2, (int) y2);
+		}
+
+		public void rect(double x, double y, double width, double height, Color color) {
+			g.setColor(color);
+			g.fillRect((int) x, (int) y, (int) width, (int) height);
+		}
+
+		public void text(String text, double x, double y, Color color, int size) {
+			g.setColor(color);
+			g.setFont(fonts.computeIfAbsent(size, k -> new Font("Dialog", Font.BOLD, k)));
+			g.drawString(text, (float) x, (float) y);
+		}
+
+		public void save(File file) throws IOException {
+			file.delete(); // stream doesn't cut old chart, which may be longer
+			try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+				writer.setOutput(out);
+				writer.write(null, new IIOImage(image, null, null), param);
+			}
+		}
+	}
+
+	/*
+	 * Writes SVG elements into a buffer, which is reused for every chart
+	 */
+	private static class SvgPainter implements ChartPainter {
+		private StringBuilder svg = new StringBuilder();
+
+		public void begin(int width, int height) {
+			svg.setLength(0);
+			svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width).append("\" height=\"")
+					.append(height).append("\">\n<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+		}
+
+		public void line(double x1, double y1, double x2, double y2, Color color) {
+			svg.append(String.format(Locale.ROOT, "<line x1=\"%.1f\" y1=\"%.1f\" x2=\"%.1f\" y2=\"%.1f\" stroke=\"%s\"/>%n",
+					x1, y1, x2, y2, hex(color)));
+		}
+
+		public void rect(double x, double y, double width, double height, Color color) {
+			svg.append(String.format(Locale.ROOT, "<rect x=\"%.1f\" y=\"%.1f\" width=\"%.1f\" height=\"%.1f\" fill=\"%s\"/>%n",
+					x, y, width, height, hex(color)));
+		}
+
+		public void text(String text, double x, double y, Color color, int size) {
+			String escaped = text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+			svg.append(String.format(Locale.ROOT,
+					"<text x=\"%.1f\" y=\"%.1f\" fill=\"%s\" font-family=\"sans-serif\" font-weight=\"bold\" font-size=\"%d\">%s</text>%n",
+					x, y, hex(color), size, escaped));
+		}
+
+		public void save(File file) throws IOException {
+			try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+				writer.write(svg.toString());
+				writer.write("</svg>\n");
+			}
+		}
+
+		private String hex(Color color) {
+			return String.format("#%06x", color.getRGB() & 0xFFFFFF);
+		}
+	}
+}
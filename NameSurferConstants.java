@@ -17,6 +17,12 @@ public interface NameSurferConstants {
 /** The name of the file containing the data */
 	public static final String NAMES_DATA_FILE = "names-data.txt";
 
+/** The name of the file listing all datasets which can be shown */
+	public static final String DATASETS_FILE = "datasets.txt";
+
+/** The most datasets kept in memory at once */
+	public static final int MAX_LOADED_DATASETS = 3;
+
 /** The first decade in the database */
 	public static final int START_DECADE = 1900;
 
@@ -26,6 +32,36 @@ public interface NameSurferConstants {
 /** The maximum rank in the database */
 	public static final int MAX_RANK = 1000;
 
+/** The number of most popular names shown in year chart */
+	public static final int TOP_NAMES = 11;
+
+/** The number of names suggested while user types */
+	public static final int SUGGESTIONS = 8;
+
+/** The number of similar names offered when a name is not found */
+	public static final int FUZZY_SUGGESTIONS = 3;
+
+/** The biggest number of typos a similar name can have */
+	public static final int FUZZY_DISTANCE = 2;
+
+/** The number of names with similar curves added to graph at once */
+	public static final int SIMILAR_NAMES = 5;
+
+/** The shortest time between two redraws of graph, in milliseconds */
+	public static final int FRAME_INTERVAL = 33;
+
+/** How often the number of redraws per second is shown again, in milliseconds */
+	public static final int RENDER_RATE_INTERVAL = 1000;
+
+/** The number of names on graph after which it is drawn as an image */
+	public static final int RASTER_THRESHOLD = 50;
+
+/** The fewest pixels between two year labels of the graph */
+	public static final int YEAR_LABEL_SPACING = 40;
+
+/** The fewest pixels between two points of a line on the graph */
+	public static final int POINT_SPACING = 2;
+
 /** The number of pixels to reserve at the top and bottom */
 	public static final int GRAPH_MARGIN_SIZE = 25;
 	
@@ -8,21 +8,68 @@
  * name and get back the corresponding NameSurferEntry.
  * Names are matched independent of case, so that "Eric"
  * and "ERIC" are the same names.
+ * Each line is parsed only once, while loading, into a
+ * NameSurferStore, so lookups don't parse anything.
+ * Loading has phases: reading names and ranks, then building the
+ * indexes. A database can also be loaded in the background, then
+ * exact lookups wait only for the first phase, ranking queries wait
+ * for all of them, and suggestions are simply empty until their
+ * index is built, so the window can be used right away.
+ * A loaded database is never changed. When the data file changes,
+ * reload builds a new database next to it, so whoever still uses
+ * the old one is not disturbed.
+ * All public methods may be called from many threads at once. The
+ * store is frozen before names can be looked up, every index is
+ * built before the latch which guards it is opened, and every
+ * query waits for its latch, so each thread sees them complete.
+ * Indexes which are built on first use are built under a lock.
  */
 
 import java.io.BufferedReader;
-import java.io.FileNotFoundException;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class NameSurferDataBase implements NameSurferConstants {
 
 	/* Instance variables */
-	// this map will store rank data as values with keys of names
-	private Map<String, String> mapOfData;
-	// this map will store names and ranks (as values) during all years(keys)
-	public Map<String, HashMap<String, Integer>> mapOfYears;
+	// which file this is and what shape its data has
+	private final NameSurferDataSet dataSet;
+	// how the file is read and kept, reload does it the same way
+	private NameSurferLoadMode mode;
+	private int parallelism;
+	private NameSurferStorageMode storage;
+	// parsed names and ranks, one row per line of the file
+	private NameSurferStore store;
+	// rows of every decade sorted by rank
+	private NameSurferDecadeIndex decadeIndex;
+	// answers ranking queries with help of decadeIndex
+	private NameSurferQueryEngine queryEngine;
+	// sorted names for suggestions
+	private NameSurferPrefixIndex prefixIndex;
+	// tree of names for typos, built the first time it is needed
+	private NameSurferFuzzyIndex fuzzyIndex;
+	// rank changes of all names, computed the first time they are needed
+	private NameSurferTrends trends;
+	// finds names with similar rank curves
+	private NameSurferSimilarity similarity;
+	// why the file couldn't be read or indexed, null if loading went well
+	private volatile Exception loadError;
+	// how long loading took, in nanoseconds
+	private long loadTime;
+	// milliseconds of every phase of loading, in the order they ran
+	private final Map<String, Double> phaseMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+	// opened when names can be looked up, and when all indexes are built
+	private final CountDownLatch namesLoaded = new CountDownLatch(1);
+	private final CountDownLatch indexesBuilt = new CountDownLatch(1);
+	// what to do when those happen, if they haven't happened yet
+	private final List<Runnable> whenNamesLoaded = new ArrayList<>();
+	private final List<Runnable> whenIndexesBuilt = new ArrayList<>();
+
+	// threads which load databases in the background
+	private static ExecutorService loaders;
 
 	/* Constructor: NameSurferDataBase(filename) */
 	/**
@@ -32,118 +79,701 @@ public class NameSurferDataBase implements NameSurferConstants {
 	 * read.
 	 */
 	public NameSurferDataBase(String filename) {
-		// initialize HashMaps
-		mapOfData = new HashMap<>();
-		mapOfYears = new HashMap<>();
-		// we initialize buf here, so we can close it in "finally"
-		BufferedReader buf = null;
+		this(filename, NameSurferLoadMode.READER);
+	}
+
+	/* Constructor: NameSurferDataBase(filename, mode) */
+	/**
+	 * Creates a new NameSurferDataBase just like the constructor above, but
+	 * reads the file the way mode says. PARALLEL mode uses all processors.
+	 */
+	public NameSurferDataBase(String filename, NameSurferLoadMode mode) {
+		this(filename, mode, Runtime.getRuntime().availableProcessors());
+	}
+
+	/* Constructor: NameSurferDataBase(filename, mode, parallelism) */
+	/**
+	 * Creates a new NameSurferDataBase which reads the file the way mode says.
+	 * Parallelism is the number of threads PARALLEL mode parses file with,
+	 * other modes ignore it. The file must have the shape of names-data.txt.
+	 */
+	public NameSurferDataBase(String filename, NameSurferLoadMode mode, int parallelism) {
+		this(NameSurferDataSet.DEFAULT.withFile(filename), mode, parallelism);
+	}
+
+	/* Constructor: NameSurferDataBase(dataSet, mode) */
+	/**
+	 * Creates a new NameSurferDataBase from the data file of the dataset,
+	 * which may start in another year and have another number of columns
+	 * than names-data.txt.
+	 */
+	public NameSurferDataBase(NameSurferDataSet dataSet, NameSurferLoadMode mode) {
+		this(dataSet, mode, Runtime.getRuntime().availableProcessors());
+	}
+
+	/* Constructor: NameSurferDataBase(dataSet, mode, parallelism) */
+	/**
+	 * Creates a new NameSurferDataBase from the data file of the dataset, read
+	 * the way mode says.
+	 */
+	public NameSurferDataBase(NameSurferDataSet dataSet, NameSurferLoadMode mode, int parallelism) {
+		this(dataSet, mode, parallelism, NameSurferStorageMode.DENSE);
+	}
+
+	/* Constructor: NameSurferDataBase(dataSet, mode, parallelism, storage) */
+	/**
+	 * Creates a new NameSurferDataBase from the data file of the dataset, read
+	 * the way mode says and kept in memory the way storage says.
+	 */
+	public NameSurferDataBase(NameSurferDataSet dataSet, NameSurferLoadMode mode, int parallelism,
+			NameSurferStorageMode storage) {
+		this.dataSet = dataSet;
+		this.mode = mode;
+		this.parallelism = parallelism;
+		this.storage = storage;
+		load(null);
+	}
+
+	/*
+	 * Creates a database which is not loaded yet, load must be called
+	 */
+	private NameSurferDataBase(NameSurferDataSet dataSet) {
+		this.dataSet = dataSet;
+		parallelism = Runtime.getRuntime().availableProcessors();
+		storage = NameSurferStorageMode.DENSE;
+	}
+
+	/* Method: loadInBackground(dataSet, mode) */
+	/**
+	 * Returns a database of the dataset right away and loads it on a
+	 * background thread. Methods which need data that is not loaded yet wait
+	 * for it, see isNamesLoaded and isLoaded.
+	 */
+	public static NameSurferDataBase loadInBackground(NameSurferDataSet dataSet, NameSurferLoadMode mode) {
+		NameSurferDataBase base = new NameSurferDataBase(dataSet);
+		base.mode = mode;
+		loaders().execute(() -> base.load(null));
+		return base;
+	}
+
+	/*
+	 * Loader threads are daemons, so a window can be closed while loading
+	 */
+	private static synchronized ExecutorService loaders() {
+		if (loaders == null) {
+			loaders = Executors.newCachedThreadPool(task -> {
+				Thread thread = new Thread(task, "NameSurfer loader");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return loaders;
+	}
+
+	/*
+	 * Reads the file and builds indexes, phase by phase. Latches are opened
+	 * even if something fails, so nobody waits forever. If the file can't be
+	 * read, the database is empty and loadError says why. If previous
+	 * database has the same names, indexes of names are taken from it
+	 */
+	private void load(NameSurferDataBase previous) {
+		long start = System.nanoTime();
 		try {
-			buf = new BufferedReader(new FileReader(filename));
-			while (true) {
-				String line = buf.readLine();
-				if (line == null) {
-					break;
+			try {
+				store = new NameSurferStore(4096, dataSet.getColumns());
+				readStore();
+				checkMaxRank();
+				phaseDone("read", start);
+				if (storage == NameSurferStorageMode.SPARSE) {
+					long phaseStart = System.nanoTime();
+					store.compact(); // before indexes are built, so dense ranks can be freed
+					phaseDone("compact", phaseStart);
 				}
-				storeData(line); // for default linear chart
-				storeYearData(line); // for year bar chart(extension)
+			} catch (RuntimeException e) { // a broken file, for example
+				failed(e);
+			} finally {
+				if (loadError != null) {
+					store = new NameSurferStore(0, dataSet.getColumns()); // nothing half read
+				}
+				store.freeze(); // from now on it is only read, by any thread
+				open(namesLoaded, whenNamesLoaded);
 			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
+			boolean sameNames = previous != null && previous.prefixIndex != null && previous.hasSameNames(store);
+			long phaseStart = System.nanoTime();
+			decadeIndex = new NameSurferDecadeIndex(store); // for year bar chart(extension)
+			queryEngine = new NameSurferQueryEngine(store, decadeIndex, dataSet.getMaxRank());
+			phaseDone("decade index", phaseStart);
+			phaseStart = System.nanoTime();
+			if (sameNames) {
+				prefixIndex = new NameSurferPrefixIndex(previous.prefixIndex, store);
+				NameSurferFuzzyIndex sharedIndex = previous.builtFuzzyIndex();
+				synchronized (this) {
+					if (fuzzyIndex == null) { // a query may have built it already
+						fuzzyIndex = sharedIndex;
+					}
+				}
+			} else {
+				prefixIndex = new NameSurferPrefixIndex(store);
+			}
+			phaseDone("prefix index", phaseStart);
+			similarity = new NameSurferSimilarity(store, dataSet.getMaxRank()); // builds its vectors on first query
+			loadTime = System.nanoTime() - start;
+		} catch (RuntimeException e) {
+			failed(e);
 		} finally {
+			open(indexesBuilt, whenIndexesBuilt);
+		}
+	}
+
+	private void failed(Exception e) {
+		if (loadError == null) {
+			loadError = e;
+		}
+		e.printStackTrace();
+	}
+
+	private void readStore() {
+		String filename = dataSet.getFilename();
+		try {
+			if (mode == NameSurferLoadMode.PARALLEL) {
+				new NameSurferParallelLoader(parallelism).load(filename, store);
+			} else if (mode == NameSurferLoadMode.SNAPSHOT) {
+				readSnapshot();
+			} else if (mode == NameSurferLoadMode.MAPPED) {
+				new NameSurferMappedReader(store).read(filename);
+			} else {
+				readLines(filename);
+			}
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	/*
+	 * Unranked columns count as max rank + 1 and graph is scaled to max rank,
+	 * so a bigger rank in the file would be wrong everywhere
+	 */
+	private void checkMaxRank() {
+		if (loadError == null && store.getMaxRank() > dataSet.getMaxRank()) {
+			failed(new IOException("Rank " + store.getMaxRank() + " in " + dataSet.getFilename()
+					+ " is bigger than max rank " + dataSet.getMaxRank() + " of dataset " + dataSet.getName()
+					+ ", set its max rank in " + DATASETS_FILE));
+		}
+	}
+
+	private void phaseDone(String phase, long phaseStart) {
+		phaseMillis.put(phase, (System.nanoTime() - phaseStart) / 1e6);
+	}
+
+	/*
+	 * Opens latch and runs what was waiting for it
+	 */
+	private void open(CountDownLatch latch, List<Runnable> waiting) {
+		List<Runnable> tasks;
+		synchronized (this) {
+			latch.countDown();
+			tasks = new ArrayList<>(waiting);
+			waiting.clear();
+		}
+		for (Runnable task : tasks) {
+			task.run();
+		}
+	}
+
+	/*
+	 * Waits until latch is opened. Interrupted thread stops waiting, but keeps
+	 * its interrupt flag
+	 */
+	private void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while database was loading", e);
+		}
+	}
+
+	/*
+	 * Waits until indexes are built. If building them failed, there is
+	 * nothing to answer with, so it throws instead
+	 */
+	private void awaitIndexes() {
+		await(indexesBuilt);
+		if (similarity == null) { // built last
+			throw new IllegalStateException("Database " + dataSet.getName() + " couldn't be loaded", loadError);
+		}
+	}
+
+	/*
+	 * Returns true if store has the same names in the same rows as this
+	 * database
+	 */
+	private boolean hasSameNames(NameSurferStore other) {
+		if (other.size() != store.size()) {
+			return false;
+		}
+		for (int row = 0; row < store.size(); row++) {
+			if (!other.getName(row).equals(store.getName(row)) || other.isReplaced(row) != store.isReplaced(row)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private synchronized NameSurferFuzzyIndex builtFuzzyIndex() {
+		return fuzzyIndex;
+	}
+
+	/* Method: reload() */
+	/**
+	 * Reads the data file again and returns it as a new database, this one is
+	 * not changed. If names in the file are still the same (only ranks were
+	 * corrected), indexes of names are shared with this database instead of
+	 * being built again. Throws IOException if the file couldn't be read, then
+	 * this database should simply be used further.
+	 */
+	public NameSurferDataBase reload() throws IOException {
+		await(indexesBuilt);
+		NameSurferDataBase next = new NameSurferDataBase(dataSet);
+		next.mode = mode;
+		next.parallelism = parallelism;
+		next.storage = storage;
+		next.load(this);
+		if (next.loadError instanceof IOException) {
+			throw (IOException) next.loadError;
+		}
+		if (next.loadError != null) {
+			throw new IOException("Couldn't load " + dataSet.getFilename(), next.loadError);
+		}
+		return next;
+	}
+
+	/* Method: changedNames(previous) */
+	/**
+	 * Returns lowercased names whose ranks are different in this database
+	 * than in previous one, with names which are only in one of them.
+	 */
+	public Set<String> changedNames(NameSurferDataBase previous) {
+		await(namesLoaded);
+		previous.await(previous.namesLoaded);
+		Set<String> changed = new HashSet<>();
+		for (int row = 0; row < store.size(); row++) {
+			if (store.isReplaced(row)) {
+				continue;
+			}
+			String name = store.getName(row).toLowerCase();
+			int oldRow = previous.store.findRow(name);
+			if (oldRow < 0 || !sameRanks(store, row, previous.store, oldRow)) {
+				changed.add(name);
+			}
+		}
+		for (int row = 0; row < previous.store.size(); row++) {
+			String name = previous.store.getName(row).toLowerCase();
+			if (!previous.store.isReplaced(row) && store.findRow(name) < 0) {
+				changed.add(name); // removed from file
+			}
+		}
+		return changed;
+	}
+
+	private static boolean sameRanks(NameSurferStore a, int rowA, NameSurferStore b, int rowB) {
+		if (a.getColumns() != b.getColumns()) {
+			return false;
+		}
+		for (int decade = 0; decade < a.getColumns(); decade++) {
+			if (a.getRank(rowA, decade) != b.getRank(rowB, decade)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* Method: whenNamesLoaded(task) */
+	/**
+	 * Runs the task once names can be looked up: right away if they already
+	 * can, otherwise on the loading thread.
+	 */
+	public void whenNamesLoaded(Runnable task) {
+		whenOpen(namesLoaded, whenNamesLoaded, task);
+	}
+
+	/* Method: whenLoaded(task) */
+	/**
+	 * Runs the task once the database is completely loaded: right away if it
+	 * already is, otherwise on the loading thread.
+	 */
+	public void whenLoaded(Runnable task) {
+		whenOpen(indexesBuilt, whenIndexesBuilt, task);
+	}
+
+	private void whenOpen(CountDownLatch latch, List<Runnable> waiting, Runnable task) {
+		synchronized (this) {
+			if (latch.getCount() > 0) {
+				waiting.add(task);
+				return;
+			}
+		}
+		task.run();
+	}
+
+	/* Method: isNamesLoaded() */
+	/**
+	 * Returns true if names can be looked up without waiting.
+	 */
+	public boolean isNamesLoaded() {
+		return namesLoaded.getCount() == 0;
+	}
+
+	/* Method: isLoaded() */
+	/**
+	 * Returns true if the database is completely loaded, with all of its
+	 * indexes.
+	 */
+	public boolean isLoaded() {
+		return indexesBuilt.getCount() == 0;
+	}
+
+	/* Method: getLoadError() */
+	/**
+	 * Returns why loading failed, or null if it didn't fail (or is not done
+	 * yet). A database whose file couldn't be read is empty, one whose
+	 * indexes couldn't be built throws from ranking queries.
+	 */
+	public Exception getLoadError() {
+		return loadError;
+	}
+
+	/* Method: getPhaseMillis() */
+	/**
+	 * Returns how many milliseconds every phase of loading took, in the order
+	 * they ran. Phases which didn't finish yet are not there.
+	 */
+	public Map<String, Double> getPhaseMillis() {
+		synchronized (phaseMillis) {
+			return new LinkedHashMap<>(phaseMillis);
+		}
+	}
+
+	/*
+	 * Reads snapshot of file if it is fresh. If it is not, file is parsed and
+	 * snapshot is written for next time. Failing to write it is not a reason
+	 * to stop, the data is already loaded
+	 */
+	private void readSnapshot() throws IOException {
+		NameSurferSnapshot snapshot = new NameSurferSnapshot(dataSet);
+		if (snapshot.isFresh()) {
 			try {
-				buf.close();
-			} catch (IOException e) {
+				snapshot.read(store);
+				return;
+			} catch (IOException | RuntimeException e) {
+				// broken snapshot is the same as stale one, file is parsed
 				e.printStackTrace();
+				store = new NameSurferStore(4096, dataSet.getColumns());
 			}
 		}
+		// taken before parsing, a change during it must leave snapshot stale
+		File source = new File(dataSet.getFilename());
+		long length = source.length();
+		long modified = source.lastModified();
+		new NameSurferMappedReader(store).read(dataSet.getFilename());
+		try {
+			snapshot.write(store, length, modified);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
 	/*
-	 * This method separates name from line and then stores it in HashMap
+	 * Reads file line by line, every line is parsed into store. A broken line
+	 * stops loading, its number is in the message
 	 */
-	private void storeData(String line) {
-		StringTokenizer tokenizer = new StringTokenizer(line);
-		String name = tokenizer.nextToken().toLowerCase();
-		mapOfData.put(name, line);
+	private void readLines(String filename) throws IOException {
+		try (BufferedReader buf = new BufferedReader(new FileReader(filename))) {
+			int lineNumber = 0;
+			while (true) {
+				String line = buf.readLine();
+				if (line == null) {
+					break;
+				}
+				lineNumber++;
+				try {
+					store.addLine(line); // for default linear chart
+				} catch (IllegalArgumentException e) {
+					throw new IOException("Could not parse " + filename + ": line " + lineNumber + ": " + e.getMessage(), e);
+				}
+			}
+		}
 	}
 
 	/* Method: findEntry(name) */
 	/**
 	 * Returns the NameSurferEntry associated with this name, if one exists. If
 	 * the name does not appear in the database, this method returns null.
+	 * The same entry object is returned for every lookup of the same name, on
+	 * any thread.
 	 */
 	public NameSurferEntry findEntry(String name) {
-		if (mapOfData.keySet().contains(name.toLowerCase())) {
-			return new NameSurferEntry(mapOfData.get(name.toLowerCase()));
+		await(namesLoaded);
+		int row = store.findRow(name);
+		if (row >= 0) {
+			return store.getEntry(row);
 		} else {
 			return null;
 		}
 	}
 
-	/*
-	 * This method receives a line for a person. Then it stores ranks for 11
-	 * different years
-	 */
-	private void storeYearData(String line) {
-		for (int j = 0; j < NDECADES; j++) {
-			int rank = 0; // initialize it
-			StringTokenizer tokenizer = new StringTokenizer(line);
-			String name = tokenizer.nextToken().toLowerCase();
-			rank = rankOfYear(rank, j, tokenizer);
-			if (rank == 0) { // people with 0 ranks, won't be at top
-				continue;
+	/* Method: findRanks(names, sink) */
+	/**
+	 * Looks up every name of a text in which names are separated by white
+	 * space or commas (a piece of a file, for example), and gives ranks of
+	 * each of them to the sink, in order. Nothing is allocated per name, see
+	 * NameSurferRankSink. Returns how many names were found.
+	 */
+	public int findRanks(CharSequence names, NameSurferRankSink sink) {
+		await(namesLoaded);
+		int[] ranks = new int[store.getColumns()];
+		int found = 0;
+		int length = names.length();
+		int pos = 0;
+		while (true) {
+			while (pos < length && isSeparator(names.charAt(pos))) {
+				pos++;
+			}
+			if (pos == length) {
+				return found;
+			}
+			int start = pos;
+			while (pos < length && !isSeparator(names.charAt(pos))) {
+				pos++;
+			}
+			if (findRanks(names, start, pos, ranks, sink)) {
+				found++;
 			}
-			String year = START_DECADE + 10 * j + "";
-			HashMap<String, Integer> map = mapOfYears.getOrDefault(year, new HashMap<>());
-			map.put(name, rank);
-			mapOfYears.put(year, map);
 		}
-		getTopElevenNames();
 	}
 
-	/*
-	 * This method return ranks associated with year. For example, if year is
-	 * 1920, we have to get fourth token of line(first was name, then 1900, 1910
-	 * and then 1920). Name is already tokenized, so we make 2 nextToken which
-	 * gets us desired rank
+	/* Method: findRanks(names[], sink) */
+	/**
+	 * Looks up every name of the array and gives ranks of each of them to the
+	 * sink, in order. Returns how many names were found.
 	 */
-	private int rankOfYear(int rank, int j, StringTokenizer tokenizer) {
-		for (int i = 0; i <= j; i++) {
-			rank = Integer.parseInt(tokenizer.nextToken());
+	public int findRanks(CharSequence[] names, NameSurferRankSink sink) {
+		await(namesLoaded);
+		int[] ranks = new int[store.getColumns()];
+		int found = 0;
+		for (CharSequence name : names) {
+			if (findRanks(name, 0, name.length(), ranks, sink)) {
+				found++;
+			}
 		}
-		return rank;
+		return found;
 	}
 
-	/*
-	 * Once every name with rank is stored, then we need to go through data and
-	 * leave only 11 most popular names during different years
+	private boolean findRanks(CharSequence names, int start, int end, int[] ranks, NameSurferRankSink sink) {
+		int row = store.findRow(names, start, end);
+		if (row < 0) {
+			sink.accept(names, start, end, null);
+			return false;
+		}
+		for (int decade = 0; decade < ranks.length; decade++) {
+			ranks[decade] = store.getRank(row, decade);
+		}
+		sink.accept(names, start, end, ranks);
+		return true;
+	}
+
+	private static boolean isSeparator(char c) {
+		return c == ',' || Character.isWhitespace(c);
+	}
+
+	/* Method: suggest(prefix, limit) */
+	/**
+	 * Returns at most limit names which start with prefix (case doesn't
+	 * matter), in alphabetical order. It uses binary search over sorted names,
+	 * so it is fast no matter how many names there are. While the database is
+	 * loading, there are no suggestions yet.
 	 */
-	private void getTopElevenNames() {
-		for (String year : mapOfYears.keySet()) {
-			mapOfYears.put(year, getTopElevenNames(year));
+	public List<String> suggest(String prefix, int limit) {
+		if (!isLoaded() || prefixIndex == null) { // still loading, or it failed
+			return new ArrayList<>();
 		}
+		return prefixIndex.suggest(prefix, limit);
 	}
 
-	/*
-	 * This method goes through HashMap of names and ranks and returns new
-	 * HashMap with minimum ranks(because low rank means high popularity (except
-	 * 0))
-	 */
-	private HashMap<String, Integer> getTopElevenNames(String year) {
-		HashMap<String, Integer> map = mapOfYears.get(year); // get that big HashMap
-		// convert the map to a list of map.Entry which holds keys and values as pairs
-		List<Map.Entry<String, Integer>> entryList = new ArrayList<>(map.entrySet());
-		// Sort the list by values(ranks) in ascending order
-		entryList.sort(Map.Entry.comparingByValue());
-		// Create a new HashMap to store the 11 lowest entries
-		HashMap<String, Integer> topElevenMap = new HashMap<>();
-		for (int i = 0; i < 11 && i < entryList.size(); i++) {
-			Map.Entry<String, Integer> entry = entryList.get(i);
-			topElevenMap.put(entry.getKey(), entry.getValue());
-		}
-		return topElevenMap;
+	/* Method: findSimilarNames(name, limit) */
+	/**
+	 * Returns at most limit names which differ from name by no more than
+	 * FUZZY_DISTANCE typos, most similar first. It is meant for names which
+	 * were not found. Index behind it is built on the first call, so programs
+	 * which never need it don't pay for it at startup.
+	 */
+	public List<String> findSimilarNames(String name, int limit) {
+		await(namesLoaded);
+		synchronized (this) {
+			if (fuzzyIndex == null) {
+				fuzzyIndex = new NameSurferFuzzyIndex(store);
+			}
+		}
+		List<String> result = new ArrayList<>();
+		for (String similar : fuzzyIndex.closest(name.trim(), limit, FUZZY_DISTANCE)) {
+			result.add(store.getName(store.findRow(similar)));
+		}
+		return result;
+	}
+
+	/* Method: findSimilarCurves(name, k, distance) */
+	/**
+	 * Returns at most k entries whose rank curves are the most similar to the
+	 * curve of name, most similar first. Returns empty array if name is not in
+	 * the database.
+	 */
+	public NameSurferEntry[] findSimilarCurves(String name, int k, NameSurferDistance distance) {
+		awaitIndexes();
+		return similarity.nearest(name.trim(), k, distance);
+	}
+
+	/* Method: getAllEntries() */
+	/**
+	 * Returns entries of all names in the database, in the order of the data
+	 * file. If a name appears twice in file, only its last line is returned.
+	 */
+	public List<NameSurferEntry> getAllEntries() {
+		await(namesLoaded);
+		List<NameSurferEntry> result = new ArrayList<>(store.size());
+		for (int row = 0; row < store.size(); row++) {
+			if (!store.isReplaced(row)) {
+				result.add(store.getEntry(row));
+			}
+		}
+		return result;
+	}
+
+	/* Method: getTopNames(year) */
+	/**
+	 * Returns entries of the most popular names (at most TOP_NAMES) of the
+	 * given year, sorted by rank. Year should be one of the decades in the
+	 * database, otherwise empty array is returned.
+	 */
+	public NameSurferEntry[] getTopNames(int year) {
+		int column = dataSet.columnOf(year);
+		if (column < 0) {
+			return new NameSurferEntry[0];
+		}
+		return topN(column, TOP_NAMES);
+	}
+
+	/* Method: topN(decade, n) */
+	/**
+	 * Returns entries of at most n most popular names of the decade (0 is
+	 * START_DECADE), sorted by rank. Names with the same rank are in the order
+	 * of the data file.
+	 */
+	public NameSurferEntry[] topN(int decade, int n) {
+		awaitIndexes();
+		return entriesOf(decadeIndex.topN(decade, n));
+	}
+
+	/* Method: rangeByRank(decade, lo, hi) */
+	/**
+	 * Returns entries of names whose rank in the decade is between lo and hi
+	 * (both included), sorted by rank.
+	 */
+	public NameSurferEntry[] rangeByRank(int decade, int lo, int hi) {
+		awaitIndexes();
+		return entriesOf(decadeIndex.rangeByRank(decade, lo, hi));
+	}
+
+	/* Method: rankingOf(decade, offset, count) */
+	/**
+	 * Returns count names of the decade which come after the offset most
+	 * popular ones, with their ranks. It is a page of a big year chart.
+	 */
+	public NameSurferRanking rankingOf(int decade, int offset, int count) {
+		awaitIndexes();
+		return queryEngine.page(decade, offset, count);
+	}
+
+	/* Method: topByBestRank(firstDecade, lastDecade, n) */
+	/**
+	 * Returns at most n names which reached the best ranks in any of decades
+	 * firstDecade..lastDecade, with their best ranks.
+	 */
+	public NameSurferRanking topByBestRank(int firstDecade, int lastDecade, int n) {
+		awaitIndexes();
+		return queryEngine.topByBestRank(firstDecade, lastDecade, n);
+	}
+
+	/* Method: topByMeanRank(firstDecade, lastDecade, n) */
+	/**
+	 * Returns at most n names with the best mean rank over decades
+	 * firstDecade..lastDecade, with their mean ranks. Decades in which a name
+	 * was not ranked count as the max rank of the dataset + 1.
+	 */
+	public NameSurferRanking topByMeanRank(int firstDecade, int lastDecade, int n) {
+		awaitIndexes();
+		return queryEngine.topByMeanRank(firstDecade, lastDecade, n);
+	}
+
+	/* Method: getTrends() */
+	/**
+	 * Returns trends of all names (risers, fallers, slope, volatility and
+	 * peak decade). They are computed on the first call.
+	 */
+	public NameSurferTrends getTrends() {
+		await(namesLoaded);
+		synchronized (this) {
+			if (trends == null) {
+				trends = new NameSurferTrends(store, dataSet.getMaxRank());
+			}
+			return trends;
+		}
+	}
+
+	private NameSurferEntry[] entriesOf(int[] rows) {
+		NameSurferEntry[] result = new NameSurferEntry[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			result[i] = store.getEntry(rows[i]);
+		}
+		return result;
+	}
+
+	/* Method: getDataSet() */
+	/**
+	 * Returns the dataset this database was loaded from.
+	 */
+	public NameSurferDataSet getDataSet() {
+		return dataSet;
+	}
+
+	/* Method: estimateMemory() */
+	/**
+	 * Returns roughly how many bytes of heap the database takes with the
+	 * indexes it always has. Indexes built on first use are not counted.
+	 */
+	public long estimateMemory() {
+		await(indexesBuilt);
+		// prefix index has a reference and a lowercased copy of every name
+		long prefixBytes = 48L * store.size();
+		long decadeBytes = (decadeIndex == null) ? 0 : decadeIndex.estimateMemory();
+		return store.estimateMemory() + decadeBytes + prefixBytes;
+	}
+
+	/* Method: getLoadTimeMillis() */
+	/**
+	 * Returns how many milliseconds it took to read and index the data file.
+	 */
+	public double getLoadTimeMillis() {
+		await(indexesBuilt);
+		return loadTime / 1e6;
+	}
+
+	/* Method: size() */
+	/**
+	 * Returns the number of names in the database.
+	 */
+	public int size() {
+		await(namesLoaded);
+		return store.size();
 	}
 
 }
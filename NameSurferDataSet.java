@@ -0,0 +1,134 @@
+/*
+ * File: NameSurferDataSet.java
+ * ----------------------------
+ * This class describes one data file: the name it is shown under,
+ * where the file is, the year of its first column, how many years
+ * are between two columns (10 for decades, 1 for yearly data), how
+ * many columns of ranks every line has and the worst rank a name
+ * can have in it. The bundled file is described by DEFAULT.
+ */
+
+public class NameSurferDataSet implements NameSurferConstants {
+
+	/** The dataset of names-data.txt, ranks of every decade since 1900 */
+	public static final NameSurferDataSet DEFAULT = new NameSurferDataSet("names", NAMES_DATA_FILE, START_DECADE,
+			10, NDECADES, MAX_RANK);
+
+	/* Instance variables */
+	private final String name;
+	private final String filename;
+	private final int firstYear;
+	private final int step;
+	private final int columns;
+	private final int maxRank;
+
+	/**
+	 * Creates a description of a data file whose ranks go up to MAX_RANK, like
+	 * those of names-data.txt.
+	 */
+	public NameSurferDataSet(String name, String filename, int firstYear, int step, int columns) {
+		this(name, filename, firstYear, step, columns, MAX_RANK);
+	}
+
+	/**
+	 * Creates a description of a data file whose ranks go up to maxRank.
+	 */
+	public NameSurferDataSet(String name, String filename, int firstYear, int step, int columns, int maxRank) {
+		if (step <= 0 || columns <= 0 || maxRank <= 0) {
+			throw new IllegalArgumentException("Dataset " + name + " needs positive step, columns and max rank");
+		}
+		this.name = name;
+		this.filename = filename;
+		this.firstYear = firstYear;
+		this.step = step;
+		this.columns = columns;
+		this.maxRank = maxRank;
+	}
+
+	/* Method: withFile(filename) */
+	/**
+	 * Returns the same description for another file of the same shape.
+	 */
+	public NameSurferDataSet withFile(String filename) {
+		return new NameSurferDataSet(filename, filename, firstYear, step, columns, maxRank);
+	}
+
+	/* Method: getName() */
+	/**
+	 * Returns the name of the dataset, for example "names" or "girls-texas".
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/* Method: getFilename() */
+	/**
+	 * Returns the data file of the dataset.
+	 */
+	public String getFilename() {
+		return filename;
+	}
+
+	/* Method: getFirstYear() */
+	/**
+	 * Returns the year of the first column.
+	 */
+	public int getFirstYear() {
+		return firstYear;
+	}
+
+	/* Method: getStep() */
+	/**
+	 * Returns the number of years between two columns.
+	 */
+	public int getStep() {
+		return step;
+	}
+
+	/* Method: getColumns() */
+	/**
+	 * Returns the number of ranks on every line.
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/* Method: getMaxRank() */
+	/**
+	 * Returns the worst rank a name can have. Graph is scaled to it, and a
+	 * column in which a name is not ranked counts as getMaxRank() + 1, so a
+	 * data file with a bigger rank fails to load.
+	 */
+	public int getMaxRank() {
+		return maxRank;
+	}
+
+	/* Method: yearOf(column) */
+	/**
+	 * Returns the year of the column.
+	 */
+	public int yearOf(int column) {
+		return firstYear + step * column;
+	}
+
+	/* Method: columnOf(year) */
+	/**
+	 * Returns the column of the year, or -1 if the dataset has no column for
+	 * that year.
+	 */
+	public int columnOf(int year) {
+		int column = (year - firstYear) / step;
+		if (year < firstYear || (year - firstYear) % step != 0 || column >= columns) {
+			return -1;
+		}
+		return column;
+	}
+
+	/* Method: toString() */
+	/**
+	 * Returns the name of the dataset, so it can be shown in a combo box.
+	 */
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * File: NameSurferDecadeIndex.java
+ * --------------------------------
+ * This class keeps, for every decade, rows of all names which were
+ * ranked in it, sorted by rank (rows with the same rank stay in the
+ * order of the file). Most popular N names of a decade are simply
+ * first N rows, and names with ranks in some range are found with
+ * two binary searches. Rows are sorted with counting sort, because
+ * ranks are small numbers, so building the index is linear.
+ */
+
+import java.util.*;
+
+public class NameSurferDecadeIndex implements NameSurferConstants {
+
+	/* Instance variables */
+	// store which rows belong to
+	private final NameSurferStore store;
+	// for every decade, ranked rows sorted by rank
+	private final int[][] rowsByRank;
+
+	/**
+	 * Builds the index over all rows of the store which are not replaced by a
+	 * later line with the same name.
+	 */
+	public NameSurferDecadeIndex(NameSurferStore store) {
+		this.store = store;
+		rowsByRank = new int[store.getColumns()][];
+		for (int j = 0; j < rowsByRank.length; j++) {
+			rowsByRank[j] = sortDecade(j);
+		}
+	}
+
+	/*
+	 * Counting sort: counts rows of every rank, then puts every row right
+	 * after rows of smaller ranks. If ranks are much bigger than the number of
+	 * names, counting array would be wasted, so then rows are sorted with
+	 * rank and row packed together in one long
+	 */
+	private int[] sortDecade(int decade) {
+		int count = 0;
+		int maxRank = 0;
+		for (int row = 0; row < store.size(); row++) {
+			int rank = store.getRank(row, decade);
+			if (rank > 0 && !store.isReplaced(row)) {
+				count++;
+				maxRank = Math.max(maxRank, rank);
+			}
+		}
+		int[] rows = new int[count];
+		if (maxRank > 4 * count + MAX_RANK) {
+			return sortByPacking(decade, rows);
+		}
+		int[] start = new int[maxRank + 2];
+		for (int row = 0; row < store.size(); row++) {
+			int rank = store.getRank(row, decade);
+			if (rank > 0 && !store.isReplaced(row)) {
+				start[rank + 1]++;
+			}
+		}
+		for (int rank = 1; rank < start.length; rank++) {
+			start[rank] += start[rank - 1];
+		}
+		for (int row = 0; row < store.size(); row++) {
+			int rank = store.getRank(row, decade);
+			if (rank > 0 && !store.isReplaced(row)) {
+				rows[start[rank]++] = row;
+			}
+		}
+		return rows;
+	}
+
+	private int[] sortByPacking(int decade, int[] rows) {
+		long[] packed = new long[rows.length];
+		int i = 0;
+		for (int row = 0; row < store.size(); row++) {
+			int rank = store.getRank(row, decade);
+			if (rank > 0 && !store.isReplaced(row)) {
+				packed[i++] = ((long) rank << 32) | row;
+			}
+		}
+		Arrays.sort(packed);
+		for (i = 0; i < rows.length; i++) {
+			rows[i] = (int) packed[i];
+		}
+		return rows;
+	}
+
+	/* Method: topN(decade, n) */
+	/**
+	 * Returns rows of at most n most popular names of the decade, sorted by
+	 * rank.
+	 */
+	public int[] topN(int decade, int n) {
+		int[] rows = rowsByRank[decade];
+		return Arrays.copyOf(rows, Math.max(0, Math.min(n, rows.length)));
+	}
+
+	/* Method: rangeByRank(decade, lo, hi) */
+	/**
+	 * Returns rows of names whose rank in the decade is between lo and hi
+	 * (both included), sorted by rank.
+	 */
+	public int[] rangeByRank(int decade, int lo, int hi) {
+		int from = firstWithRankAtLeast(decade, lo);
+		int to = (hi == Integer.MAX_VALUE) ? rowsByRank[decade].length : firstWithRankAtLeast(decade, hi + 1);
+		return Arrays.copyOfRange(rowsByRank[decade], from, Math.max(from, to));
+	}
+
+	/* Method: rankedCount(decade) */
+	/**
+	 * Returns the number of names which have a rank in the decade.
+	 */
+	public int rankedCount(int decade) {
+		return rowsByRank[decade].length;
+	}
+
+	/* Method: rowAt(decade, position) */
+	/**
+	 * Returns row which is at given position (0 is the most popular) of the
+	 * decade.
+	 */
+	public int rowAt(int decade, int position) {
+		return rowsByRank[decade][position];
+	}
+
+	/* Method: estimateMemory() */
+	/**
+	 * Returns roughly how many bytes of heap the index takes.
+	 */
+	public long estimateMemory() {
+		long bytes = 16L + 8L * rowsByRank.length;
+		for (int[] rows : rowsByRank) {
+			bytes += 16L + 4L * rows.length;
+		}
+		return bytes;
+	}
+
+	/*
+	 * Binary search over rows of decade, they are sorted by rank
+	 */
+	private int firstWithRankAtLeast(int decade, int rank) {
+		int[] rows = rowsByRank[decade];
+		int low = 0;
+		int high = rows.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (store.getRank(rows[middle], decade) < rank) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
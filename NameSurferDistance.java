@@ -0,0 +1,21 @@
+/*
+ * File: NameSurferDistance.java
+ * -----------------------------
+ * This enum lists the ways NameSurferSimilarity can measure how
+ * different rank curves of two names are. In both of them a
+ * decade in which a name was not ranked counts as the max rank of
+ * its dataset + 1.
+ */
+
+public enum NameSurferDistance {
+
+	/** Straight line distance between rank vectors, it compares levels too */
+	EUCLIDEAN,
+
+	/**
+	 * One minus correlation of rank vectors. It compares only the shape of
+	 * curves, so a name which rises like another one is similar to it even if
+	 * it is much less popular
+	 */
+	CORRELATION
+}
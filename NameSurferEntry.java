@@ -5,6 +5,12 @@
  * This class represents a single entry in the database.  Each
  * NameSurferEntry contains a name and a list giving the popularity
  * of that name for each decade stretching back to 1900.
+ * Entries handed out by NameSurferDataBase don't own their ranks,
+ * they are just views over a row of the NameSurferStore matrix.
+ * Entries of other datasets may have more or fewer ranks than
+ * NDECADES, for example one per year.
+ * All fields are final, so an entry can be handed to another thread
+ * without any locking and it never looks half-made there.
  */
 
 import java.util.*;
@@ -12,30 +18,54 @@ import java.util.*;
 public class NameSurferEntry implements NameSurferConstants {
 
 	/* Instance variables of NameSurferEntry class */
-	private String name;
-	private int[] ranks;
+	private final String name;
+	private final int[] ranks;
+	// store and row this entry is a view of, store is null if entry has own
+	// ranks
+	private final NameSurferStore store;
+	private final int row;
+	// number of ranks of this entry
+	private final int columns;
 
 	/* Constructor: NameSurferEntry(line) */
 	/**
 	 * Creates a new NameSurferEntry from a data line as it appears in the data
 	 * file. Each line begins with the name, which is followed by integers
-	 * giving the rank of that name for each decade.
+	 * giving the rank of that name for each decade (or each column of its
+	 * dataset).
 	 */
 	public NameSurferEntry(String line) {
 		// this will return array of all values
-		String[] values = line.split(" ");
+		String[] values = line.trim().split("\\s+");
 		name = values[0]; // array starts with name
-		fillRanks(values);
+		ranks = parseRanks(values);
+		columns = ranks.length;
+		store = null;
+		row = -1;
 	}
 
 	/*
-	 * This method will fill ranks with rest of values, which are 11 numbers
+	 * Creates an entry which reads its ranks from a row of the store. It is
+	 * used by NameSurferStore, so nothing is copied or parsed.
 	 */
-	private void fillRanks(String[] values) {
-		ranks = new int[NDECADES];
-		for (int i = 1; i <= NDECADES; i++) {
+	NameSurferEntry(NameSurferStore store, int row) {
+		this.name = store.getName(row);
+		this.ranks = null;
+		this.store = store;
+		this.row = row;
+		this.columns = store.getColumns();
+	}
+
+	/*
+	 * This method will return ranks from rest of values, one for every column
+	 * (11 numbers in names-data.txt)
+	 */
+	private static int[] parseRanks(String[] values) {
+		int[] ranks = new int[values.length - 1];
+		for (int i = 1; i < values.length; i++) {
 			ranks[i - 1] = Integer.parseInt(values[i]);
 		}
+		return ranks;
 	}
 
 	/* Method: getName() */
@@ -54,18 +84,34 @@ public class NameSurferEntry implements NameSurferConstants {
 	 * START_DECADE. If a name does not appear in a decade, the rank value is 0.
 	 */
 	public int getRank(int decade) {
-		if (decade < 0 || decade >= NDECADES) {
+		if (decade < 0 || decade >= columns) {
 			return 0;
 		}
+		if (store != null) {
+			return store.getRank(row, decade);
+		}
 		return ranks[decade];
 	}
 
+	/* Method: getColumns() */
+	/**
+	 * Returns the number of ranks this entry has, which is NDECADES unless it
+	 * comes from a dataset of another shape.
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
 	/* Method: toString() */
 	/**
 	 * Returns a string that makes it easy to see the value of a
 	 * NameSurferEntry.
 	 */
 	public String toString() {
-		return name + " " + Arrays.toString(ranks);
+		int[] values = new int[columns];
+		for (int i = 0; i < columns; i++) {
+			values[i] = getRank(i);
+		}
+		return name + " " + Arrays.toString(values);
 	}
 }
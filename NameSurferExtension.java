@@ -10,28 +10,56 @@ import acm.io.IODialog;
 import acm.program.*;
 
 import java.awt.event.*;
+import java.io.IOException;
 import java.util.*;
 
 import javax.swing.*;
+import javax.swing.Timer;
 
 public class NameSurferExtension extends Program implements NameSurferConstants {
 
 	// instance variables of J Components
 	private JTextField textField, deleteTextField, chartTextField, yearTextField;
-	private JButton graphButton, clearButton, deleteButton, chart, removeChart, yearBut;
+	private JLabel renderRate;
+	private JButton graphButton, clearButton, deleteButton, chart, removeChart, yearBut, previousPage, nextPage;
 	// Instance variables of objects of other classes
 	private NameSurferDataBase base;
 	private NameSurferGraphExtension graph;
+	private NameSurferSuggestions suggestions, chartSuggestions;
+	// loads data file again when it is edited
+	private NameSurferReloader reloader;
 	// Instance variable of list, which stores names that have graphs on canvas
 	public List<String> namesOnGraph = new ArrayList<>();
 	// IODialog for user-related interactions
 	private IODialog dialog = getDialog();
+	// years and page of year chart which is displayed
+	private int firstYear, lastYear, yearChartPage;
 
-	// Constructor of this class
+	// Constructor of this class, database is loaded in background so window
+	// shows up right away
 	public NameSurferExtension() {
-		base = new NameSurferDataBase(NAMES_DATA_FILE);
-		graph = new NameSurferGraphExtension();
+		base = NameSurferDataBase.loadInBackground(NameSurferDataSet.DEFAULT, NameSurferLoadMode.SNAPSHOT);
+		graph = new NameSurferGraphExtension(base);
 		add(graph);
+		try {
+			reloader = new NameSurferReloader(base);
+			reloader.addListener((newBase, changedNames) -> SwingUtilities
+					.invokeLater(() -> dataFileReloaded(newBase, changedNames)));
+		} catch (IOException e) {
+			e.printStackTrace(); // program works, only without reloading
+		}
+	}
+
+	/*
+	 * Runs on Swing event thread, so nothing is in the middle of using the
+	 * old database
+	 */
+	private void dataFileReloaded(NameSurferDataBase newBase, Set<String> changedNames) {
+		base = newBase;
+		suggestions.setDataBase(base);
+		chartSuggestions.setDataBase(base);
+		graph.reloadEntries(base, changedNames);
+		namesOnGraph.removeIf(name -> base.findEntry(name) == null);
 	}
 
 	/* Method: init() */
@@ -51,11 +79,13 @@ public class NameSurferExtension extends Program implements NameSurferConstants
 		JComponentsForNameInsertion();
 		JComponentsForNameDeletion();
 		JComponentsForChart();
+		showRenderRate();
 	}
 
 	private void JComponentsForNameInsertion() {
 		add(new JLabel("Name"), SOUTH); // we don't need its instance
 		textField = new JTextField(20);
+		suggestions = new NameSurferSuggestions(textField, base); // type-ahead
 		add(textField, SOUTH);
 		textField.addActionListener(this);// pressing enter will work too
 		graphButton = new JButton("Graph");
@@ -77,10 +107,12 @@ public class NameSurferExtension extends Program implements NameSurferConstants
 	 * We have two charts in this program. One displays ranks of a person
 	 * through years but like a bar chart not our default linear chart. Second
 	 * chart is related to years, since it shows top 11 names in entered year
+	 * (or in range of years like 1950-1980). Next 11 names are on next page
 	 */
 	private void JComponentsForChart() {
 		add(new JLabel("Name for chart"), NORTH);
 		chartTextField = new JTextField(10);
+		chartSuggestions = new NameSurferSuggestions(chartTextField, base);
 		add(chartTextField, NORTH);
 		chartTextField.addActionListener(this);
 		chart = new JButton("Name Chart");
@@ -91,16 +123,34 @@ public class NameSurferExtension extends Program implements NameSurferConstants
 		yearTextField.addActionListener(this);
 		yearBut = new JButton("Year Chart");
 		add(yearBut, NORTH);
+		previousPage = new JButton("<");
+		add(previousPage, NORTH);
+		nextPage = new JButton(">");
+		add(nextPage, NORTH);
 		removeChart = new JButton("Back to Graph"); // just removes charts
 		add(removeChart, NORTH);
 	}
 
+	/*
+	 * Label at the bottom is refreshed every RENDER_RATE_INTERVAL with the
+	 * number of redraws during the last second
+	 */
+	private void showRenderRate() {
+		renderRate = new JLabel("0 redraws/s");
+		add(renderRate, SOUTH);
+		new Timer(RENDER_RATE_INTERVAL, e -> renderRate.setText(graph.getRendersPerSecond() + " redraws/s")).start();
+	}
+
 	/* Method: actionPerformed(e) */
 	/**
 	 * This class is responsible for detecting when the buttons are clicked, so
 	 * you will have to define a method to respond to button actions.
 	 */
 	public void actionPerformed(ActionEvent e) {
+		if (isStillLoading(e.getSource())) {
+			dialog.println("Names are still loading, try again in a moment");
+			return; // text stays, so user can just press enter again
+		}
 		// Pressing enter or graph button can both work
 		if (e.getSource() == graphButton || e.getSource() == textField) {
 			displayName();
@@ -115,36 +165,63 @@ public class NameSurferExtension extends Program implements NameSurferConstants
 			graph.removeCharts();
 		} else if (e.getSource() == yearBut || e.getSource() == yearTextField) {
 			displayYearChart();
+		} else if (e.getSource() == previousPage) {
+			turnYearChartPage(-1);
+		} else if (e.getSource() == nextPage) {
+			turnYearChartPage(1);
 		}
 		// we reset textFields
 		resetTextFields();
 	}
 
+	/*
+	 * Names can be looked up as soon as they are read, charts of years need
+	 * whole database
+	 */
+	private boolean isStillLoading(Object source) {
+		if (source == yearBut || source == yearTextField || source == previousPage || source == nextPage) {
+			return !base.isLoaded();
+		}
+		if (source == graphButton || source == textField || source == chart || source == chartTextField) {
+			return !base.isNamesLoaded();
+		}
+		return false;
+	}
+
 	private void displayName() {
 		graph.removeCharts(); // at first we have to be on our main page
 		// I turn name into lowerCase to handle case-sensitivity
 		// And I also trim it to avoid unnecessary void spaces
 		String name = textField.getText().toLowerCase().trim();
-		if (validNameEntered(name)) { // if name is in base
-			displayGraph(name);
+		// we look name up only once, null means it is not in base
+		NameSurferEntry entry = base.findEntry(name);
+		if (entry != null) { // if name is in base
+			displayGraph(name, entry);
 		} else {
-			dialog.showErrorMessage("Invalid name");
+			dialog.showErrorMessage(invalidNameMessage(name));
 		}
 	}
 
-	private boolean validNameEntered(String name) {
-		return base.findEntry(name) != null;
+	/*
+	 * If user made a typo, we tell which names could have been meant
+	 */
+	private String invalidNameMessage(String name) {
+		List<String> similarNames = base.findSimilarNames(name, FUZZY_SUGGESTIONS);
+		if (similarNames.isEmpty()) {
+			return "Invalid name";
+		}
+		return "Invalid name. Did you mean " + String.join(", ", similarNames) + "?";
 	}
 
 	/*
 	 * This method will display graph on canvas, if it is not already displayed.
 	 * If it is already there, user will receive specific message
 	 */
-	private void displayGraph(String name) {
+	private void displayGraph(String name, NameSurferEntry entry) {
 		if (namesOnGraph.contains(name)) {
 			dialog.println("Name is already on graph");
 		} else {
-			graph.addEntry(base.findEntry(name));
+			graph.addEntry(entry);
 			namesOnGraph.add(name);
 		}
 	}
@@ -167,22 +244,43 @@ public class NameSurferExtension extends Program implements NameSurferConstants
 		// I turn name into lowerCase to handle case-sensitivity
 		// And I also trim it to avoid unnecessary void spaces
 		String name = chartTextField.getText().toLowerCase().trim();
-		if (validNameEntered(name)) { // if name is in base
-			graph.createChart(base.findEntry(name));
+		NameSurferEntry entry = base.findEntry(name);
+		if (entry != null) { // if name is in base
+			graph.createChart(entry);
 		} else {
-			dialog.showErrorMessage("Invalid name");
+			dialog.showErrorMessage(invalidNameMessage(name));
 		}
 	}
 
 	private void displayYearChart() {
-		String year = yearTextField.getText().trim();
-		if (!year.isEmpty() && isNumber(year) && yearIsValid(year)) {
-			graph.drawYearChart(year);
+		String text = yearTextField.getText().trim();
+		// range of years is written like 1950-1980
+		String[] years = text.split("-", 2);
+		String first = years[0].trim();
+		String last = (years.length == 2) ? years[1].trim() : first;
+		if (!first.isEmpty() && !last.isEmpty() && isNumber(first) && isNumber(last) && yearIsValid(first)
+				&& yearIsValid(last) && Integer.parseInt(first) <= Integer.parseInt(last)) {
+			firstYear = Integer.parseInt(first);
+			lastYear = Integer.parseInt(last);
+			yearChartPage = 0;
+			graph.drawYearChart(firstYear, lastYear, yearChartPage);
 		} else {
 			dialog.showErrorMessage("Invalid year");
 		}
 	}
 
+	/*
+	 * Shows previous (step -1) or next (step 1) 11 names of the year chart
+	 */
+	private void turnYearChartPage(int step) {
+		if (firstYear == 0) {
+			dialog.showErrorMessage("Show a year chart first");
+		} else if (graph.hasYearChartPage(firstYear, lastYear, yearChartPage + step)) {
+			yearChartPage += step;
+			graph.drawYearChart(firstYear, lastYear, yearChartPage);
+		}
+	}
+
 	/*
 	 * String year should be made with only digits
 	 */
@@ -197,16 +295,11 @@ public class NameSurferExtension extends Program implements NameSurferConstants
 	}
 
 	/*
-	 * Checks if it is in the range of 1900-2000
+	 * Checks if the dataset has a column for the year (1900, 1910, ..., 2000
+	 * for names-data.txt)
 	 */
 	private boolean yearIsValid(String year) {
-		int intYear = Integer.parseInt(year);
-		for (int i = START_DECADE; i <= 2000; i = i + 10) {
-			if (intYear == i) {
-				return true;
-			}
-		}
-		return false;
+		return year.length() < 10 && base.getDataSet().columnOf(Integer.parseInt(year)) >= 0;
 	}
 
 	private void resetTextFields() {
@@ -0,0 +1,88 @@
+/*
+ * File: NameSurferFootprint.java
+ * ------------------------------
+ * This program reports how much memory ranks take in every way we
+ * have kept them: an int array in every entry (how the first
+ * version of NameSurfer kept them), the dense 16-bit matrix of
+ * NameSurferStore, and its sparse form. It does it for the bundled
+ * names-data.txt and for a synthetic file with as many names as the
+ * first argument says (default is 10000000), and also measures how
+ * long reading all ranks takes in both forms of the store.
+ * Run it with java -Xmx4g NameSurferFootprint [numberOfNames]
+ */
+
+import java.io.*;
+
+public class NameSurferFootprint implements NameSurferConstants {
+
+	public static void main(String[] args) throws IOException {
+		int numberOfNames = (args.length > 0) ? Integer.parseInt(args[0]) : 10000000;
+		report(NAMES_DATA_FILE);
+		File file = File.createTempFile("names-footprint", ".txt");
+		file.deleteOnExit();
+		NameSurferBenchmark.writeSyntheticFile(file, numberOfNames);
+		report(file.getPath());
+		file.delete();
+	}
+
+	/*
+	 * Loads the file into a store and prints memory of ranks before and after
+	 * the store is compacted
+	 */
+	private static void report(String filename) throws IOException {
+		NameSurferStore store = new NameSurferStore(4096);
+		new NameSurferMappedReader(store).read(filename);
+		int size = store.size();
+		// every entry had its own int array, with 16 bytes of array header
+		long entryArrays = size * (16L + 4L * NDECADES);
+		long dense = store.estimateRankMemory();
+		long heapBefore = usedHeap();
+		double denseNanos = readAllRanks(store);
+		store.compact();
+		long heapAfter = usedHeap();
+		long sparse = store.estimateRankMemory();
+		double sparseNanos = readAllRanks(store);
+		System.out.printf("%s: %d names%n", filename, size);
+		System.out.printf("  int[] in every entry %12d bytes %6.1f per name%n", entryArrays, entryArrays / (double) size);
+		System.out.printf("  dense 16-bit matrix  %12d bytes %6.1f per name, %.2f ns per rank%n", dense,
+				dense / (double) size, denseNanos);
+		System.out.printf("  sparse               %12d bytes %6.1f per name, %.2f ns per rank%n", sparse,
+				sparse / (double) size, sparseNanos);
+		System.out.printf("  heap of whole store  %12d -> %d bytes after compacting%n", heapBefore, heapAfter);
+	}
+
+	/*
+	 * Reads every rank of every row and returns nanoseconds per rank of the
+	 * faster of two rounds, first one warms up the JIT
+	 */
+	private static double readAllRanks(NameSurferStore store) {
+		return Math.min(timeAllRanks(store), timeAllRanks(store));
+	}
+
+	/*
+	 * The sum is printed nowhere, it only keeps the loop from being thrown
+	 * away
+	 */
+	private static double timeAllRanks(NameSurferStore store) {
+		long sum = 0;
+		long start = System.nanoTime();
+		for (int row = 0; row < store.size(); row++) {
+			for (int decade = 0; decade < store.getColumns(); decade++) {
+				sum += store.getRank(row, decade);
+			}
+		}
+		long time = System.nanoTime() - start;
+		if (sum == -1) {
+			System.out.println();
+		}
+		return time / (double) store.size() / store.getColumns();
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
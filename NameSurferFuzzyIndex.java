@@ -0,0 +1,181 @@
+/*
+ * File: NameSurferFuzzyIndex.java
+ * -------------------------------
+ * This class finds names which are close to a misspelled name.
+ * Lowercased names are kept in a BK-tree: every child of a node is
+ * stored under its edit distance from that node, so by triangle
+ * inequality a search for names within distance d of the query only
+ * has to visit children whose distance is within d of the query's
+ * distance to the node. Most of the tree is never looked at.
+ * Tree is kept in primitive arrays, one slot per name. Once built,
+ * the tree is only read, and every search has its own edit distance
+ * table, so many threads can search at once.
+ */
+
+import java.util.*;
+
+public class NameSurferFuzzyIndex {
+
+	/* Instance variables */
+	// lowercased name of every node, node 0 is the root
+	private String[] names;
+	// first child and next sibling of every node (-1 if there is none)
+	private int[] firstChild;
+	private int[] nextSibling;
+	// edit distance between node and its parent
+	private int[] distanceToParent;
+	// number of nodes in tree
+	private int size;
+
+	/**
+	 * Builds the tree over all names of the store.
+	 */
+	public NameSurferFuzzyIndex(NameSurferStore store) {
+		int capacity = Math.max(1, store.size());
+		names = new String[capacity];
+		firstChild = new int[capacity];
+		nextSibling = new int[capacity];
+		distanceToParent = new int[capacity];
+		int[][] table = newTable();
+		for (int row = 0; row < store.size(); row++) {
+			if (!store.isReplaced(row)) { // older duplicates are not in database
+				insert(store.getName(row).toLowerCase(), table);
+			}
+		}
+	}
+
+	/*
+	 * Walks down from root, always following the child which has the same
+	 * distance as the new name, until there is no such child
+	 */
+	private void insert(String name, int[][] table) {
+		int node = size++;
+		names[node] = name;
+		firstChild[node] = -1;
+		nextSibling[node] = -1;
+		if (node == 0) {
+			return;
+		}
+		int parent = 0;
+		while (true) {
+			int distance = distance(name, names[parent], table);
+			if (distance == 0) { // same name is already there
+				size--;
+				return;
+			}
+			int child = firstChild[parent];
+			while (child != -1 && distanceToParent[child] != distance) {
+				child = nextSibling[child];
+			}
+			if (child == -1) {
+				distanceToParent[node] = distance;
+				nextSibling[node] = firstChild[parent];
+				firstChild[parent] = node;
+				return;
+			}
+			parent = child;
+		}
+	}
+
+	/* Method: closest(name, limit, maxDistance) */
+	/**
+	 * Returns at most limit lowercased names whose edit distance from name is
+	 * at most maxDistance, closest first (names with the same distance are in
+	 * alphabetical order).
+	 */
+	public List<String> closest(String name, int limit, int maxDistance) {
+		if (size == 0 || limit <= 0) {
+			return new ArrayList<>();
+		}
+		String query = name.toLowerCase();
+		int[][] table = newTable();
+		// best nodes so far, found[i] has distance foundDistance[i]
+		int[] found = new int[limit];
+		int[] foundDistance = new int[limit];
+		int count = 0;
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			int distance = distance(query, names[node], table);
+			if (distance <= maxDistance) {
+				count = keep(node, distance, found, foundDistance, count);
+				if (count == limit) { // no need to look for worse names any more
+					maxDistance = foundDistance[count - 1];
+				}
+			}
+			for (int child = firstChild[node]; child != -1; child = nextSibling[child]) {
+				if (Math.abs(distanceToParent[child] - distance) <= maxDistance) {
+					if (top == stack.length) {
+						stack = Arrays.copyOf(stack, 2 * top);
+					}
+					stack[top++] = child;
+				}
+			}
+		}
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			result.add(names[found[i]]);
+		}
+		return result;
+	}
+
+	/*
+	 * Inserts node into arrays which are sorted by distance and then by name,
+	 * the worst one falls out when arrays are full. Returns new count
+	 */
+	private int keep(int node, int distance, int[] found, int[] foundDistance, int count) {
+		int i = count;
+		while (i > 0 && (foundDistance[i - 1] > distance
+				|| (foundDistance[i - 1] == distance && names[found[i - 1]].compareTo(names[node]) > 0))) {
+			i--;
+		}
+		if (i == found.length) {
+			return count;
+		}
+		int last = Math.min(count, found.length - 1);
+		for (int j = last; j > i; j--) {
+			found[j] = found[j - 1];
+			foundDistance[j] = foundDistance[j - 1];
+		}
+		found[i] = node;
+		foundDistance[i] = distance;
+		return Math.min(count + 1, found.length);
+	}
+
+	/*
+	 * Two rows of edit distance table, reused for all distances of one search
+	 */
+	private static int[][] newTable() {
+		return new int[][] { new int[32], new int[32] };
+	}
+
+	/*
+	 * Levenshtein distance: number of inserted, deleted or replaced letters
+	 * needed to turn one word into the other
+	 */
+	private int distance(String a, String b, int[][] table) {
+		if (b.length() + 1 > table[0].length) {
+			table[0] = new int[2 * (b.length() + 1)];
+			table[1] = new int[table[0].length];
+		}
+		int[] previous = table[0];
+		int[] current = table[1];
+		for (int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			char c = a.charAt(i - 1);
+			for (int j = 1; j <= b.length(); j++) {
+				int replace = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+				current[j] = Math.min(replace, Math.min(previous[j], current[j - 1]) + 1);
+			}
+			int[] row = previous;
+			previous = current;
+			current = row;
+		}
+		return previous[b.length()];
+	}
+}
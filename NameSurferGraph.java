@@ -1,4 +1,3 @@
-
 /*
  * File: NameSurferGraph.java
  * ---------------------------
@@ -16,8 +15,21 @@ import java.awt.*;
 public class NameSurferGraph extends GCanvas implements NameSurferConstants, ComponentListener {
 
 	/* Instance variables */
+	// shape of data on graph (first year and number of columns)
+	private NameSurferDataSet dataSet = NameSurferDataSet.DEFAULT;
 	// this arrayList will store entries
 	private List<NameSurferEntry> entries = new ArrayList<>();
+	// objects of outline, we keep them so they can be moved on resize
+	private GLine topLine, bottomLine;
+	private GLine[] verticalLines;
+	private GLabel[] yearLabels;
+	// GLines and GLabels of every entry, in the same order as entries
+	private List<GLine[]> linesOfEntries = new ArrayList<>();
+	private List<GLabel[]> labelsOfEntries = new ArrayList<>();
+	// many resize events are answered by one relayout
+	private NameSurferRenderScheduler scheduler = new NameSurferRenderScheduler(this::relayout);
+	// draws the graph into an image when there are too many names for GObjects
+	private NameSurferRasterRenderer raster;
 
 	/**
 	 * Creates a new NameSurferGraph object that displays the data.
@@ -32,51 +44,170 @@ public class NameSurferGraph extends GCanvas implements NameSurferConstants, Com
 	public void clear() {
 		// along with canvas, arrayList should be cleared too
 		entries.clear();
+		raster = null;
 		update();
 	}
 
+	/* Method: setDataSet(dataSet) */
+	/**
+	 * Clears the graph and makes it draw entries of the given dataset, with
+	 * its years and number of columns.
+	 */
+	public void setDataSet(NameSurferDataSet dataSet) {
+		this.dataSet = dataSet;
+		clear();
+	}
+
 	/* Method: addEntry(entry) */
 	/**
-	 * Adds a new NameSurferEntry to the list of entries on the display. Note
-	 * that this method does not actually draw the graph, but simply stores the
-	 * entry; the graph is drawn by calling update.
+	 * Adds a new NameSurferEntry to the list of entries on the display. Only
+	 * objects of the new entry are drawn, outline and entries which are
+	 * already on canvas stay as they are.
 	 */
 	public void addEntry(NameSurferEntry entry) {
 		entries.add(entry);
+		if (raster == null && entries.size() > RASTER_THRESHOLD) {
+			setRasterMode(true);
+		} else if (raster != null) {
+			raster.addEntry(entry, entries.size() - 1);
+			repaint();
+		} else {
+			drawEntry(entry, entries.size() - 1);
+		}
+	}
+
+	/* Method: reloadEntries(base, changedNames) */
+	/**
+	 * Replaces entries on the graph with entries of the reloaded database.
+	 * Only entries whose names are in changedNames are moved on canvas, names
+	 * which are not in the database anymore are removed, and then the graph
+	 * is drawn again, because colors of names after them change.
+	 */
+	public void reloadEntries(NameSurferDataBase base, Set<String> changedNames) {
+		boolean removed = false;
+		for (int j = entries.size() - 1; j >= 0; j--) {
+			NameSurferEntry entry = base.findEntry(entries.get(j).getName());
+			if (entry == null) {
+				entries.remove(j);
+				removed = true;
+			} else {
+				entries.set(j, entry);
+			}
+		}
+		if (raster != null) {
+			setRasterMode(true); // cached image is drawn again from the new entries
+		} else if (removed || topLine == null || !fitsLayout(currentLayout())) {
+			update();
+		} else {
+			for (int j = 0; j < entries.size(); j++) {
+				NameSurferEntry entry = entries.get(j);
+				if (changedNames.contains(entry.getName().toLowerCase())) {
+					relabelEntry(entry, labelsOfEntries.get(j));
+					placeEntry(entry, linesOfEntries.get(j), labelsOfEntries.get(j));
+				}
+			}
+		}
+	}
+
+	/*
+	 * Labels show ranks, so they need new text when ranks change
+	 */
+	private void relabelEntry(NameSurferEntry entry, GLabel[] labels) {
+		int[] labelColumns = currentLayout().labelColumns();
+		for (int i = 0; i < labels.length; i++) {
+			labels[i].setLabel(NameSurferLayout.labelOf(entry, labelColumns[i]));
+		}
+	}
+
+	/* Method: setRasterMode(on) */
+	/**
+	 * Switches between drawing graph with GLines and GLabels, and drawing it
+	 * into one cached image. Graph switches to image by itself when more than
+	 * RASTER_THRESHOLD names are on it, and back when it is cleared.
+	 */
+	public void setRasterMode(boolean on) {
+		raster = on ? new NameSurferRasterRenderer(true, dataSet) : null;
 		update();
 	}
 
 	/**
 	 * Updates the display image by deleting all the graphical objects from the
 	 * canvas and then reassembling the display according to the list of
-	 * entries. Your application must call update after calling either clear or
-	 * addEntry; update is also called whenever the size of the canvas changes.
+	 * entries. It is called by clear.
 	 */
 	public void update() {
 		removeAll();
+		linesOfEntries.clear();
+		labelsOfEntries.clear();
+		topLine = null;
+		if (raster != null) {
+			add(new GImage(raster.render(entries, getWidth(), getHeight())));
+			return;
+		}
 		drawOutline();
 		drawEntries();
 	}
 
+	/* Method: relayout() */
+	/**
+	 * Moves objects which are already on canvas to coordinates of its current
+	 * size. Nothing is created, so it is called whenever the size of the
+	 * canvas changes. Only if the new size needs another number of year labels
+	 * or points of lines (datasets with many columns), graph is drawn again.
+	 */
+	public void relayout() {
+		if (topLine == null || !fitsLayout(currentLayout())) { // nothing was drawn yet, or graph is an image
+			update();
+			return;
+		}
+		placeOutline();
+		for (int j = 0; j < entries.size(); j++) {
+			placeEntry(entries.get(j), linesOfEntries.get(j), labelsOfEntries.get(j));
+		}
+	}
+
+	/* Method: getRendersPerSecond() */
+	/**
+	 * Returns how many times graph was laid out during the last second, for
+	 * example while window is being resized.
+	 */
+	public int getRendersPerSecond() {
+		return scheduler.getRendersPerSecond();
+	}
+
+	/*
+	 * Returns true if objects on canvas are enough for the layout
+	 */
+	private boolean fitsLayout(NameSurferLayout layout) {
+		if (layout.labelColumns().length != yearLabels.length) {
+			return false;
+		}
+		for (int j = 0; j < entries.size(); j++) {
+			if (layout.pointColumns(entries.get(j)).length != linesOfEntries.get(j).length + 1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private NameSurferLayout currentLayout() {
+		return new NameSurferLayout(getWidth(), getHeight(), dataSet);
+	}
+
 	/*
 	 * That's how initial graph will look alike
 	 */
 	private void drawOutline() {
 		drawHorizontalLines();
 		verticalLinesAndLabels();
+		placeOutline();
 	}
 
 	private void drawHorizontalLines() {
-		drawHorizontalLine(GRAPH_MARGIN_SIZE); // top
-		drawHorizontalLine(getHeight() - GRAPH_MARGIN_SIZE); // bottom
-	}
-
-	private void drawHorizontalLine(int y) {
-		double x1 = 0;
-		double y1 = y;
-		double x2 = getWidth();
-		double y2 = y1;
-		add(new GLine(x1, y1, x2, y2));
+		topLine = new GLine(0, 0, 0, 0); // top
+		add(topLine);
+		bottomLine = new GLine(0, 0, 0, 0); // bottom
+		add(bottomLine);
 	}
 
 	/*
@@ -84,26 +215,38 @@ public class NameSurferGraph extends GCanvas implements NameSurferConstants, Com
 	 * canvas
 	 */
 	private void verticalLinesAndLabels() {
-		double xOffest = getWidth() / NDECADES;
-		for (int i = 0; i < NDECADES; i++) {
-			String year = String.valueOf(START_DECADE + 10 * i);
-			double x = xOffest * i; // x coordinate
-			addYear(year, x + COORDINATE_SENSITIVITY);
-			addVerticalLine(x);
+		NameSurferLayout layout = currentLayout();
+		int[] columns = layout.labelColumns();
+		verticalLines = new GLine[columns.length];
+		yearLabels = new GLabel[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			String year = layout.yearLabel(columns[i]);
+			yearLabels[i] = new GLabel(year);
+			add(yearLabels[i]);
+			verticalLines[i] = new GLine(0, 0, 0, 0);
+			add(verticalLines[i]);
 		}
 	}
 
-	private void addYear(String year, double x) {
-		GLabel label = new GLabel(year);
-		add(label, x, getHeight() - COORDINATE_SENSITIVITY);
+	/*
+	 * Puts outline objects where they belong for current size of canvas
+	 */
+	private void placeOutline() {
+		NameSurferLayout layout = currentLayout();
+		placeHorizontalLine(topLine, GRAPH_MARGIN_SIZE);
+		placeHorizontalLine(bottomLine, getHeight() - GRAPH_MARGIN_SIZE);
+		int[] columns = layout.labelColumns();
+		for (int i = 0; i < columns.length; i++) {
+			double x = layout.xForDecade(columns[i]); // x coordinate
+			yearLabels[i].setLocation(x + COORDINATE_SENSITIVITY, getHeight() - COORDINATE_SENSITIVITY);
+			verticalLines[i].setStartPoint(x, 0);
+			verticalLines[i].setEndPoint(x, getHeight());
+		}
 	}
 
-	private void addVerticalLine(double x) {
-		double x1 = x;
-		double y1 = 0;
-		double x2 = x1;
-		double y2 = getHeight();
-		add(new GLine(x1, y1, x2, y2));
+	private void placeHorizontalLine(GLine line, int y) {
+		line.setStartPoint(0, y);
+		line.setEndPoint(getWidth(), y);
 	}
 
 	/*
@@ -117,48 +260,49 @@ public class NameSurferGraph extends GCanvas implements NameSurferConstants, Com
 	}
 
 	/*
-	 * This inner loop will iterate through decades to draw GLabels and simply
-	 * make a graph with ranks
+	 * These loops create GLines between points of entry and GLabels at
+	 * labelled columns (every decade of names-data.txt), then they are put on
+	 * their places
 	 */
 	private void drawEntry(NameSurferEntry entry, int j) {
-		// Ratio for scaling rank to y coordinate
-		double ratio = (getHeight() - 2 * GRAPH_MARGIN_SIZE) / (double) MAX_RANK;
-		Color color = chooseColor(j);
-		double decadeWidth = getWidth() / NDECADES;
-		for (int i = 0; i < NDECADES; i++) {
-			int startDecade = i;
-			int endDecade = i + 1;
-			int startRank = entry.getRank(startDecade);
-			int endRank = entry.getRank(endDecade);
-			double x1 = i * decadeWidth;
-			double y1 = (startRank == 0) ? getHeight() - GRAPH_MARGIN_SIZE : GRAPH_MARGIN_SIZE + ratio * startRank;
-			double x2 = (i + 1) * decadeWidth;
-			double y2 = (endRank == 0) ? getHeight() - GRAPH_MARGIN_SIZE : GRAPH_MARGIN_SIZE + ratio * endRank;
-			String name = (startRank == 0) ? entry.getName() + "*" : entry.getName() + " " + startRank;
-			GLine line = new GLine(x1, y1, x2, y2);
-			line.setColor(color);
-			if (i != NDECADES - 1) { // we don't need last line to be drawn
-				add(line);
-			}
-			GLabel label = new GLabel(name, x1 + COORDINATE_SENSITIVITY, y1);
-			label.setColor(color);
-			add(label);
+		Color color = NameSurferLayout.chooseColor(j);
+		NameSurferLayout layout = currentLayout();
+		int[] points = layout.pointColumns(entry);
+		int[] labelColumns = layout.labelColumns();
+		GLine[] lines = new GLine[Math.max(0, points.length - 1)]; // we don't need last line to be drawn
+		GLabel[] labels = new GLabel[labelColumns.length];
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = new GLine(0, 0, 0, 0);
+			lines[i].setColor(color);
+			add(lines[i]);
 		}
+		for (int i = 0; i < labels.length; i++) {
+			String name = NameSurferLayout.labelOf(entry, labelColumns[i]);
+			labels[i] = new GLabel(name);
+			labels[i].setColor(color);
+			add(labels[i]);
+		}
+		linesOfEntries.add(lines);
+		labelsOfEntries.add(labels);
+		placeEntry(entry, lines, labels);
 	}
 
 	/*
-	 * These four colors will be chosen one-by-one. Task said last color to be
-	 * yellow, but it is hardly seen on canvas, so we make it orange
+	 * Simply makes a graph with ranks: every GLine goes from rank of one point
+	 * to rank of next one, and GLabel stands at rank of its column
 	 */
-	private Color chooseColor(int j) {
-		if (j % 4 == 0) {
-			return Color.BLACK;
-		} else if (j % 4 == 1) {
-			return Color.RED;
-		} else if (j % 4 == 2) {
-			return Color.BLUE;
-		} else { // when j%4==3
-			return Color.ORANGE;
+	private void placeEntry(NameSurferEntry entry, GLine[] lines, GLabel[] labels) {
+		NameSurferLayout layout = currentLayout();
+		int[] points = layout.pointColumns(entry);
+		for (int i = 0; i < lines.length; i++) {
+			lines[i].setStartPoint(layout.xForDecade(points[i]), layout.yForRank(entry.getRank(points[i])));
+			lines[i].setEndPoint(layout.xForDecade(points[i + 1]), layout.yForRank(entry.getRank(points[i + 1])));
+		}
+		int[] labelColumns = layout.labelColumns();
+		for (int i = 0; i < labels.length; i++) {
+			double x = layout.xForDecade(labelColumns[i]);
+			double y = layout.yForRank(entry.getRank(labelColumns[i]));
+			labels[i].setLocation(x + COORDINATE_SENSITIVITY, y);
 		}
 	}
 
@@ -170,7 +314,7 @@ public class NameSurferGraph extends GCanvas implements NameSurferConstants, Com
 	}
 
 	public void componentResized(ComponentEvent e) {
-		update();
+		scheduler.request();
 	}
 
 	public void componentShown(ComponentEvent e) {
@@ -19,25 +19,39 @@ import java.awt.*;
 public class NameSurferGraphExtension extends GCanvas implements NameSurferConstants, ComponentListener {
 
 	/* Instance variables */
+	// database which is already loaded by NameSurferExtension
+	private NameSurferDataBase base;
 	// this arrayList will store entries
 	private List<NameSurferEntry> entries = new ArrayList<>();
 	// this HashMap remembers all GLines used to make graphs for users
 	private Map<String, ArrayList<GLine>> linesOfGraph = new HashMap<>();
 	// this HashMap remembers all GLabels used to make graphs for users
 	private Map<String, ArrayList<GLabel>> labelsOfGraph = new HashMap<>();
+	// same GLabels, but indexed by where they are, for collision checks
+	private NameSurferLabelGrid labelGrid = new NameSurferLabelGrid();
 	// this arrayList remembers all names that are displayed on canvas
 	private List<String> names = new ArrayList<>();
 	// this is canvas of bar chart
 	private GCanvas barChartCanvas = new GCanvas();
 	// this is canvas for year chart
 	private GCanvas yearChartCanvas = new GCanvas();
+	// name of bar chart which is shown, null if it isn't shown
+	private String chartName;
+	// years and page of year chart which is shown, page is -1 if it isn't
+	private int chartFirstYear, chartLastYear, chartPage = -1;
 	// will use random for charts, so it can be pretty :)
 	private RandomGenerator rgen = RandomGenerator.getInstance();
+	// many resize events are answered by one update, labels need placing again
+	private NameSurferRenderScheduler scheduler = new NameSurferRenderScheduler(this::update);
+	// draws the graph into an image when there are too many names for GObjects
+	private NameSurferRasterRenderer raster;
 
 	/**
-	 * Creates a new NameSurferGraph object that displays the data.
+	 * Creates a new NameSurferGraph object that displays the data. Year charts
+	 * are answered by the given database, so it is never loaded twice.
 	 */
-	public NameSurferGraphExtension() {
+	public NameSurferGraphExtension(NameSurferDataBase base) {
+		this.base = base;
 		addComponentListener(this);
 	}
 
@@ -49,15 +63,32 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 	 * randomColor could be smth user won't like. So user can enter the same
 	 * name and color will change.
 	 */
-	public void drawYearChart(String year) {
+	public void drawYearChart(int firstYear, int lastYear, int page) {
 		remove(barChartCanvas); // if it was displayed before yearChartCanvas
+		chartName = null;
+		chartFirstYear = firstYear;
+		chartLastYear = lastYear;
+		chartPage = page;
 		yearChartCanvas.setBounds(0, 0, 2 * getWidth(), 2 * getHeight());
 		add(yearChartCanvas);
 		yearChartCanvas.removeAll(); // if smth was drawn before it
 		drawOutline(yearChartCanvas);
 		Color color = rgen.nextColor();
-		displayYear(year, color);
-		drawYearBar(year, color);
+		String title = (firstYear == lastYear) ? "" + firstYear : firstYear + "-" + lastYear;
+		if (page > 0) {
+			title += " (" + (page * TOP_NAMES + 1) + "-" + (page + 1) * TOP_NAMES + ")";
+		}
+		displayYear(title, color);
+		drawYearBar(firstYear, lastYear, page, color);
+	}
+
+	/* Method: hasYearChartPage(firstYear, lastYear, page) */
+	/**
+	 * Returns true if year chart of these years has any name on that page, so
+	 * user can't turn pages after the last one.
+	 */
+	public boolean hasYearChartPage(int firstYear, int lastYear, int page) {
+		return page >= 0 && yearRanking(firstYear, lastYear, page).size() > 0;
 	}
 
 	private void displayYear(String year, Color color) {
@@ -69,39 +100,45 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 	}
 
 	/*
-	 * It looks like a drawChar method which is for names
-	 */
-	private void drawYearBar(String yaer, Color color) {
-		NameSurferDataBase base = new NameSurferDataBase(NAMES_DATA_FILE);
-		Map<String, Integer> map = base.mapOfYears.get(yaer);
-		List<Integer> list = new ArrayList<>();
-		for (String name : map.keySet()) {
-			list.add(map.get(name));
+	 * It looks like a drawChar method which is for names. Top names of year
+	 * come from database already sorted by rank
+	 */
+	private void drawYearBar(int firstYear, int lastYear, int page, Color color) {
+		drawIt(yearRanking(firstYear, lastYear, page), color);
+	}
+
+	/*
+	 * One year is a page of its ranking. For several years names are ranked
+	 * by their mean rank, and we ask for all pages up to this one
+	 */
+	private NameSurferRanking yearRanking(int firstYear, int lastYear, int page) {
+		int firstDecade = base.getDataSet().columnOf(firstYear);
+		int lastDecade = base.getDataSet().columnOf(lastYear);
+		if (firstDecade == lastDecade) {
+			return base.rankingOf(firstDecade, page * TOP_NAMES, TOP_NAMES);
 		}
-		Collections.sort(list);
-		drawIt(map, list, color);
+		NameSurferRanking ranking = base.topByMeanRank(firstDecade, lastDecade, (page + 1) * TOP_NAMES);
+		int from = Math.min(page * TOP_NAMES, ranking.size());
+		NameSurferEntry[] entries = new NameSurferEntry[ranking.size() - from];
+		int[] ranks = new int[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = ranking.getEntry(from + i);
+			ranks[i] = ranking.getRank(from + i);
+		}
+		return new NameSurferRanking(entries, ranks);
 	}
 
-	private void drawIt(Map<String, Integer> map, List<Integer> list, Color color) {
+	private void drawIt(NameSurferRanking ranking, Color color) {
+		NameSurferLayout layout = currentLayout();
 		int xCoordinate = 0;
-		// listOfNames makes sure same name is not used more that once
-		List<String> listOfNames = new ArrayList<>();
-		// rankIndex will be the variable which will get ranks from sorted list
-		// from lowest to higher, so chart can be symmetric
-		int rankIndex = 0;
-		for (int j = 0; j < 11; j++) { // 11 names should be displayed
-			for (String name : map.keySet()) { // searches name with specific rank
-				if (list.get(rankIndex) == map.get(name) && !listOfNames.contains(name)) {
-					listOfNames.add(name);
-					int rank = map.get(name);
-					addRectangle(yearChartCanvas, rank, color, xCoordinate);
-					addName(name, color, xCoordinate);
-					addRankLabel(rank, color, xCoordinate);
-					xCoordinate += getWidth() / NDECADES;
-					break;
-				}
-			}
-			rankIndex++; // move to next rank
+		// entries are sorted from lowest rank to higher, so chart is symmetric
+		for (int i = 0; i < ranking.size(); i++) {
+			String name = ranking.getEntry(i).getName().toLowerCase();
+			int rank = ranking.getRank(i);
+			addRectangle(yearChartCanvas, layout, rank, color, xCoordinate, layout.barWidth(TOP_NAMES));
+			addName(name, color, xCoordinate);
+			addRankLabel(rank, color, xCoordinate);
+			xCoordinate += getWidth() / TOP_NAMES;
 		}
 	}
 
@@ -109,12 +146,11 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 	 * This is a column, which is made by the rank (This method is used for two
 	 * charts)
 	 */
-	private void addRectangle(GCanvas canvas, int rank, Color color, int xCoordinate) {
-		double ratio = (getHeight() - 2 * GRAPH_MARGIN_SIZE) / (double) MAX_RANK;
-		double decadeWidth = -2 * COORDINATE_SENSITIVITY + getWidth() / NDECADES;
-		double height = ratio * (MAX_RANK - rank);
+	private void addRectangle(GCanvas canvas, NameSurferLayout layout, int rank, Color color, int xCoordinate,
+			double barWidth) {
+		double height = layout.barHeight(rank);
 		if (rank != 0) { // this is applicable for name Chart
-			GRect rect = new GRect(decadeWidth, height);
+			GRect rect = new GRect(barWidth, height);
 			rect.setFilled(true);
 			rect.setColor(color);
 			canvas.add(rect, COORDINATE_SENSITIVITY + xCoordinate, getHeight() - GRAPH_MARGIN_SIZE - height);
@@ -170,6 +206,8 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 	 */
 	public void createChart(NameSurferEntry entry) {
 		remove(yearChartCanvas); // if it was drawn before chartCanvas
+		chartPage = -1;
+		chartName = entry.getName();
 		barChartCanvas.setBounds(0, 0, 2 * getWidth(), 2 * getHeight());
 		add(barChartCanvas);
 		barChartCanvas.removeAll();
@@ -184,22 +222,25 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 	 */
 	private void drawChart(NameSurferEntry entry) {
 		Color color = rgen.nextColor();
-		int xCoordinate = 0;
-		for (int i = 0; i < NDECADES; i++) {
-			int rank = entry.getRank(i);
-			addRectangle(barChartCanvas, rank, color, xCoordinate);
+		NameSurferLayout layout = currentLayout();
+		// only labelled columns get a bar, so bars are never thinner than labels
+		for (int column : layout.labelColumns()) {
+			int rank = entry.getRank(column);
+			int xCoordinate = (int) layout.xForDecade(column);
+			addRectangle(barChartCanvas, layout, rank, color, xCoordinate, layout.barWidth());
 			GLabel label = new GLabel("" + rank);
 			label.setFont("Arial-Bold-24");
 			label.setColor(color);
 			barChartCanvas.add(label, xCoordinate + 6 * COORDINATE_SENSITIVITY,
 					-COORDINATE_SENSITIVITY + GRAPH_MARGIN_SIZE);
-			xCoordinate += getWidth() / NDECADES;
 		}
 	}
 
 	public void removeCharts() {
 		remove(barChartCanvas);
 		remove(yearChartCanvas);
+		chartName = null;
+		chartPage = -1;
 	}
 
 	/**
@@ -209,34 +250,116 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 		// along with canvas, data structures should be cleared too
 		entries.clear();
 		names.clear();
+		raster = null;
 		linesOfGraph.clear();
 		labelsOfGraph.clear();
+		labelGrid.clear();
 		update();
 	}
 
 	/* Method: addEntry(entry) */
 	/**
-	 * Adds a new NameSurferEntry to the list of entries on the display. Note
-	 * that this method does not actually draw the graph, but simply stores the
-	 * entry; the graph is drawn by calling update.
+	 * Adds a new NameSurferEntry to the list of entries on the display. Only
+	 * objects of the new entry are drawn, outline and entries which are
+	 * already on canvas stay as they are.
 	 */
 	public void addEntry(NameSurferEntry entry) {
 		entries.add(entry);
+		if (raster == null && entries.size() > RASTER_THRESHOLD) {
+			setRasterMode(true);
+		} else if (raster != null) {
+			raster.addEntry(entry, entries.size() - 1);
+			repaint();
+		} else {
+			drawEntry(entry, entries.size() - 1);
+		}
+	}
+
+	/* Method: reloadEntries(base, changedNames) */
+	/**
+	 * Makes the graph use the reloaded database. Entries on the graph are
+	 * replaced with entries of it, names which are not in it anymore are
+	 * removed, and the graph is drawn again only if some name on it changed,
+	 * because labels of all names are placed together. A chart which is shown
+	 * is drawn again from the new database.
+	 */
+	public void reloadEntries(NameSurferDataBase base, Set<String> changedNames) {
+		this.base = base;
+		boolean affected = false;
+		for (int j = entries.size() - 1; j >= 0; j--) {
+			String name = entries.get(j).getName();
+			affected |= changedNames.contains(name.toLowerCase());
+			NameSurferEntry entry = base.findEntry(name);
+			if (entry == null) {
+				entries.remove(j);
+			} else {
+				entries.set(j, entry);
+			}
+		}
+		if (affected) {
+			update();
+		}
+		redrawChart();
+	}
+
+	/*
+	 * Bar chart of a name which is not in the database anymore is closed
+	 */
+	private void redrawChart() {
+		if (chartName != null) {
+			NameSurferEntry entry = base.findEntry(chartName);
+			if (entry != null) {
+				createChart(entry);
+			} else {
+				removeCharts();
+			}
+		} else if (chartPage >= 0) {
+			drawYearChart(chartFirstYear, chartLastYear, chartPage);
+		}
+	}
+
+	/* Method: setRasterMode(on) */
+	/**
+	 * Switches between drawing graph with GLines and GLabels, and drawing it
+	 * into one cached image. Image has no name labels, with that many names
+	 * they couldn't be read anyway. Graph switches to image by itself when
+	 * more than RASTER_THRESHOLD names are on it, and back when it is cleared.
+	 */
+	public void setRasterMode(boolean on) {
+		raster = on ? new NameSurferRasterRenderer(false) : null;
 		update();
 	}
 
 	/**
 	 * Updates the display image by deleting all the graphical objects from the
 	 * canvas and then reassembling the display according to the list of
-	 * entries. Your application must call update after calling either clear or
-	 * addEntry; update is also called whenever the size of the canvas changes.
+	 * entries. It is called by clear and whenever the size of the canvas
+	 * changes, because then every coordinate changes.
 	 */
 	public void update() {
 		removeAll();
+		// objects of old size are gone, so labels are placed again from scratch
+		linesOfGraph.clear();
+		labelsOfGraph.clear();
+		labelGrid.clear();
+		names.clear();
+		if (raster != null) {
+			add(new GImage(raster.render(entries, getWidth(), getHeight())));
+			return;
+		}
 		drawOutline(this);
 		drawEntries();
 	}
 
+	/* Method: getRendersPerSecond() */
+	/**
+	 * Returns how many times graph was redrawn during the last second, for
+	 * example while window is being resized.
+	 */
+	public int getRendersPerSecond() {
+		return scheduler.getRendersPerSecond();
+	}
+
 	/*
 	 * That's how initial graph will look alike
 	 */
@@ -263,17 +386,25 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 	 * canvas
 	 */
 	private void verticalLinesAndLabels(GCanvas canvas) {
-		double xOffest = getWidth() / NDECADES;
-		for (int i = 0; i < NDECADES; i++) {
-			String year = String.valueOf(START_DECADE + 10 * i);
-			double x = xOffest * i; // x coordinate
-			if (canvas == this || canvas == barChartCanvas) {
-				addYear(year, x + COORDINATE_SENSITIVITY, canvas);
+		if (canvas == yearChartCanvas) { // its columns are names, not years
+			double xOffest = getWidth() / TOP_NAMES;
+			for (int i = 0; i < TOP_NAMES; i++) {
+				addVerticalLine(xOffest * i, canvas);
 			}
+			return;
+		}
+		NameSurferLayout layout = currentLayout();
+		for (int column : layout.labelColumns()) {
+			double x = layout.xForDecade(column); // x coordinate
+			addYear(layout.yearLabel(column), x + COORDINATE_SENSITIVITY, canvas);
 			addVerticalLine(x, canvas);
 		}
 	}
 
+	private NameSurferLayout currentLayout() {
+		return new NameSurferLayout(getWidth(), getHeight(), base.getDataSet());
+	}
+
 	private void addYear(String year, double x, GCanvas canvas) {
 		GLabel label = new GLabel(year);
 		// makes label change its size regarding canvas dimensions
@@ -301,26 +432,26 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 	}
 
 	/*
-	 * This inner loop will iterate through decades to draw GLabels and simply
-	 * make a graph with ranks
+	 * First loop draws GLines between points the layout keeps, so there are
+	 * never more of them than pixels, second one draws GLabels at labelled
+	 * columns (every decade of names-data.txt)
 	 */
 	private void drawEntry(NameSurferEntry entry, int j) {
-		// Ratio for scaling rank to y coordinate
-		double ratio = (getHeight() - 2 * GRAPH_MARGIN_SIZE) / (double) MAX_RANK;
+		NameSurferLayout layout = currentLayout();
 		Color color = chooseColor(j);
-		double decadeWidth = getWidth() / NDECADES;
-		for (int i = 0; i < NDECADES; i++) {
-			int startDecade = i;
-			int endDecade = i + 1;
-			int startRank = entry.getRank(startDecade);
-			int endRank = entry.getRank(endDecade);
-			double x1 = startDecade * decadeWidth;
-			double y1 = (startRank == 0) ? getHeight() - GRAPH_MARGIN_SIZE : GRAPH_MARGIN_SIZE + ratio * startRank;
-			double x2 = (endDecade) * decadeWidth;
-			double y2 = (endRank == 0) ? getHeight() - GRAPH_MARGIN_SIZE : GRAPH_MARGIN_SIZE + ratio * endRank;
-			String name = (startRank == 0) ? entry.getName() + "*" : entry.getName() + " " + startRank;
-			addLine(x1, y1, x2, y2, color, startDecade, entry);
-			addNameLabel(name, color, x1, y1, startRank, endRank, entry);
+		int[] points = layout.pointColumns(entry);
+		for (int i = 0; i + 1 < points.length; i++) { // we don't need line after last point
+			double x1 = layout.xForDecade(points[i]);
+			double y1 = layout.yForRank(entry.getRank(points[i]));
+			double x2 = layout.xForDecade(points[i + 1]);
+			double y2 = layout.yForRank(entry.getRank(points[i + 1]));
+			addLine(x1, y1, x2, y2, color, entry);
+		}
+		for (int column : layout.labelColumns()) {
+			int startRank = entry.getRank(column);
+			int endRank = entry.getRank(column + 1);
+			String name = NameSurferLayout.labelOf(entry, column);
+			addNameLabel(name, color, layout.xForDecade(column), layout.yForRank(startRank), startRank, endRank, entry);
 		}
 		fillListOfNames(entry);
 	}
@@ -341,13 +472,11 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 		}
 	}
 
-	private void addLine(double x1, double y1, double x2, double y2, Color color, int startDecade, NameSurferEntry entry) {
+	private void addLine(double x1, double y1, double x2, double y2, Color color, NameSurferEntry entry) {
 		GLine line = new GLine(x1, y1, x2, y2);
 		line.setColor(color);
-		if (startDecade != NDECADES - 1) { // we don't need last line to be drawn
-			add(line);
-			fillMapOfGLines(entry, line);
-		}
+		add(line);
+		fillMapOfGLines(entry, line);
 	}
 
 	/*
@@ -395,32 +524,26 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 
 	private void checkPlacementOfLabel(NameSurferEntry entry, GLabel label) {
 		if (!names.contains(entry.getName().toLowerCase())) {
-			placeLabel(label, labelsOfGraph);
+			placeLabel(label);
 		}
 	}
 
 	/*
 	 * This method handles crossings of different labels as much as possible.
 	 * But when there are many graphs and labels should be close to their
-	 * graphs, it becomes impossible.
+	 * graphs, it becomes impossible. Label jumps right below the lowest label
+	 * it hits, until it hits nothing. Every jump goes down, if it wouldn't
+	 * the label stays where it is, so this can never loop forever
 	 */
-	private void placeLabel(GLabel label, Map<String, ArrayList<GLabel>> labelsOfGraph) {
-		int dy = 2;
-		while (hasCollision(label, labelsOfGraph)) {
-			label.move(0, dy);
-		}
-	}
-
-	private boolean hasCollision(GLabel label, Map<String, ArrayList<GLabel>> labelsOfGraph) {
-		GRectangle labelBounds = label.getBounds(); // rectangle GLabel is drawn into
-		for (String str : labelsOfGraph.keySet()) {
-			for (GLabel labels : labelsOfGraph.get(str)) {
-				if (labelBounds.intersects(labels.getBounds())) {
-					return true;
-				}
+	private void placeLabel(GLabel label) {
+		while (true) {
+			GRectangle labelBounds = label.getBounds(); // rectangle GLabel is drawn into
+			double bottom = labelGrid.lowestCollision(labelBounds);
+			if (Double.isNaN(bottom) || bottom <= labelBounds.getY()) {
+				return;
 			}
+			label.move(0, bottom - labelBounds.getY());
 		}
-		return false;
 	}
 
 	/*
@@ -431,6 +554,7 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 		ArrayList<GLabel> arrayOfGLabels = labelsOfGraph.getOrDefault(user, new ArrayList<GLabel>());
 		arrayOfGLabels.add(label);
 		labelsOfGraph.put(user, arrayOfGLabels);
+		labelGrid.add(label);
 	}
 
 	private void fillListOfNames(NameSurferEntry entry) {
@@ -445,10 +569,20 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 	 * specific person
 	 */
 	public void removeName(String name) {
+		if (raster != null) { // there are no objects of name, image is drawn again
+			removeFromEntriesList(name);
+			update();
+			return;
+		}
+		boolean last = !entries.isEmpty() && entries.get(entries.size() - 1).getName().equalsIgnoreCase(name);
 		removeGLines(name);
 		removeGLabels(name);
 		removeFromEntriesList(name);
 		names.remove(name); // remove from names list
+		if (!last) {
+			// colours go by position, lines after the removed one take new ones
+			update();
+		}
 	}
 
 	/*
@@ -469,6 +603,7 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 		ArrayList<GLabel> removableGLabels = labelsOfGraph.get(name);
 		for (GLabel label : removableGLabels) {
 			remove(label);
+			labelGrid.remove(label);
 		}
 		labelsOfGraph.remove(name);
 	}
@@ -494,7 +629,7 @@ public class NameSurferGraphExtension extends GCanvas implements NameSurferConst
 	}
 
 	public void componentResized(ComponentEvent e) {
-		update();
+		scheduler.request();
 	}
 
 	public void componentShown(ComponentEvent e) {
@@ -0,0 +1,109 @@
+/*
+ * File: NameSurferLabelGrid.java
+ * ------------------------------
+ * This class is a uniform grid over the canvas which remembers
+ * where GLabels are. Every label is put into all cells its bounds
+ * touch, so to find labels which may intersect a rectangle only
+ * the few cells under that rectangle are looked at, not every
+ * label on the canvas.
+ */
+
+import acm.graphics.*;
+import java.util.*;
+
+public class NameSurferLabelGrid {
+
+	// size of one square cell, in pixels
+	private static final int CELL_SIZE = 32;
+
+	/* Instance variables */
+	// cell (column and row packed in one long) -> labels touching it
+	private Map<Long, ArrayList<GLabel>> cells = new HashMap<>();
+
+	/* Method: add(label) */
+	/**
+	 * Adds label to every cell its current bounds touch. Label shouldn't be
+	 * moved while it is in grid.
+	 */
+	public void add(GLabel label) {
+		GRectangle bounds = label.getBounds();
+		for (int column = column(bounds.getX()); column <= column(bounds.getX() + bounds.getWidth()); column++) {
+			for (int row = row(bounds.getY()); row <= row(bounds.getY() + bounds.getHeight()); row++) {
+				cells.computeIfAbsent(key(column, row), k -> new ArrayList<>()).add(label);
+			}
+		}
+	}
+
+	/* Method: remove(label) */
+	/**
+	 * Removes label from grid.
+	 */
+	public void remove(GLabel label) {
+		GRectangle bounds = label.getBounds();
+		for (int column = column(bounds.getX()); column <= column(bounds.getX() + bounds.getWidth()); column++) {
+			for (int row = row(bounds.getY()); row <= row(bounds.getY() + bounds.getHeight()); row++) {
+				ArrayList<GLabel> labels = cells.get(key(column, row));
+				if (labels != null) {
+					labels.remove(label);
+				}
+			}
+		}
+	}
+
+	/* Method: clear() */
+	/**
+	 * Removes all labels from grid.
+	 */
+	public void clear() {
+		cells.clear();
+	}
+
+	/* Method: lowestCollision(bounds) */
+	/**
+	 * Returns y coordinate of the bottom of the lowest label which overlaps
+	 * bounds, or NaN if no label overlaps them. Labels which only touch an
+	 * edge of bounds don't overlap, so a label moved right below another one
+	 * doesn't collide with it again.
+	 */
+	public double lowestCollision(GRectangle bounds) {
+		double bottom = Double.NaN;
+		for (int column = column(bounds.getX()); column <= column(bounds.getX() + bounds.getWidth()); column++) {
+			for (int row = row(bounds.getY()); row <= row(bounds.getY() + bounds.getHeight()); row++) {
+				ArrayList<GLabel> labels = cells.get(key(column, row));
+				if (labels == null) {
+					continue;
+				}
+				for (GLabel label : labels) {
+					GRectangle other = label.getBounds();
+					if (overlap(bounds, other)) {
+						double otherBottom = other.getY() + other.getHeight();
+						if (Double.isNaN(bottom) || otherBottom > bottom) {
+							bottom = otherBottom;
+						}
+					}
+				}
+			}
+		}
+		return bottom;
+	}
+
+	/*
+	 * GRectangle.intersects counts touching edges too, we need strict overlap
+	 */
+	private boolean overlap(GRectangle a, GRectangle b) {
+		return a.getX() < b.getX() + b.getWidth() && b.getX() < a.getX() + a.getWidth()
+				&& a.getY() < b.getY() + b.getHeight() && b.getY() < a.getY() + a.getHeight();
+	}
+
+	private int column(double x) {
+		return (int) Math.floor(x / CELL_SIZE);
+	}
+
+	private int row(double y) {
+		return (int) Math.floor(y / CELL_SIZE);
+	}
+
+	private long key(int column, int row) {
+		return ((long) column << 32) | (row & 0xFFFFFFFFL);
+	}
+}
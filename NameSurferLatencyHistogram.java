@@ -0,0 +1,102 @@
+/*
+ * File: NameSurferLatencyHistogram.java
+ * -------------------------------------
+ * This class counts how long requests took. Times are put into
+ * buckets whose bounds double (up to 1 us, up to 2 us, up to 4 us
+ * and so on), so a few dozen counters cover everything from a
+ * microsecond to minutes, and percentiles are read from them with
+ * the precision of one bucket. Counters are atomic, so any number
+ * of threads can record at once without locks.
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class NameSurferLatencyHistogram {
+
+	// bucket i counts times up to 2^i microseconds, the last one all longer
+	private static final int BUCKETS = 40;
+
+	/* Instance variables */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/* Method: record(nanos) */
+	/**
+	 * Counts one request which took the given number of nanoseconds.
+	 */
+	public void record(long nanos) {
+		long micros = Math.max(1, (nanos + 999) / 1000);
+		// smallest i with micros <= 2^i
+		int bucket = 64 - Long.numberOfLeadingZeros(micros - 1);
+		counts.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+	}
+
+	/* Method: count() */
+	/**
+	 * Returns how many requests were counted.
+	 */
+	public long count() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/* Method: percentileMicros(percentile) */
+	/**
+	 * Returns upper bound, in microseconds, of the bucket in which the given
+	 * percentile (for example 99) of requests is, or 0 if nothing was counted.
+	 */
+	public long percentileMicros(double percentile) {
+		long[] snapshot = snapshot();
+		long total = 0;
+		for (long count : snapshot) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long wanted = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= Math.max(1, wanted)) {
+				return 1L << i;
+			}
+		}
+		return 1L << (BUCKETS - 1);
+	}
+
+	/* Method: toJson() */
+	/**
+	 * Returns the histogram as JSON: number of requests, some percentiles and
+	 * counts of all buckets which are not empty, keyed by their upper bound in
+	 * microseconds.
+	 */
+	public String toJson() {
+		long[] snapshot = snapshot();
+		StringBuilder json = new StringBuilder();
+		json.append("{\"count\":").append(count());
+		json.append(",\"p50us\":").append(percentileMicros(50));
+		json.append(",\"p90us\":").append(percentileMicros(90));
+		json.append(",\"p99us\":").append(percentileMicros(99));
+		json.append(",\"p999us\":").append(percentileMicros(99.9));
+		json.append(",\"buckets\":{");
+		boolean first = true;
+		for (int i = 0; i < BUCKETS; i++) {
+			if (snapshot[i] > 0) {
+				json.append(first ? "" : ",").append("\"").append(1L << i).append("\":").append(snapshot[i]);
+				first = false;
+			}
+		}
+		return json.append("}}").toString();
+	}
+
+	private long[] snapshot() {
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+		}
+		return snapshot;
+	}
+}
@@ -0,0 +1,25 @@
+/*
+ * File: NameSurferLoadMode.java
+ * -----------------------------
+ * This enum lists the different ways NameSurferDataBase can read
+ * the data file. All of them produce the same database, they only
+ * differ in how fast they are on big files.
+ */
+
+public enum NameSurferLoadMode {
+
+	/** Reads the file line by line with a BufferedReader */
+	READER,
+
+	/** Memory-maps the file and parses ranks straight from its bytes */
+	MAPPED,
+
+	/** Memory-maps the file and parses chunks of it on several threads */
+	PARALLEL,
+
+	/**
+	 * Reads binary snapshot of the file if it is up to date. Otherwise parses
+	 * the file like MAPPED does and writes a new snapshot for next start
+	 */
+	SNAPSHOT
+}
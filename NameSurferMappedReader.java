@@ -0,0 +1,159 @@
+/*
+ * File: NameSurferMappedReader.java
+ * ---------------------------------
+ * This class reads the data file by memory-mapping it with NIO
+ * and parsing names and ranks directly from the mapped bytes into
+ * a NameSurferStore. No String is created for lines or ranks,
+ * only names are materialized. Files which are too big for one
+ * mapping are mapped region by region, and every region ends at
+ * the end of a line. A line with a missing rank or a rank which
+ * is not a number stops parsing with an IOException which tells
+ * the number of the line.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class NameSurferMappedReader implements NameSurferConstants {
+
+	// biggest region of file which is mapped at once
+	private static final int MAX_REGION = 1 << 30;
+
+	/* Instance variables */
+	// store which receives parsed rows
+	private NameSurferStore store;
+	// bytes of name which is being parsed, reused for every line
+	private byte[] nameBytes = new byte[64];
+	// ranks of line which is being parsed, reused for every line
+	private int[] ranks;
+	// number of line which is being parsed, for error messages
+	private long line;
+
+	/**
+	 * Creates a reader which adds every parsed line to the given store.
+	 */
+	public NameSurferMappedReader(NameSurferStore store) {
+		this(store, 1);
+	}
+
+	/**
+	 * Creates a reader whose first parsed line has the given number in error
+	 * messages, for a reader which starts in the middle of a file.
+	 */
+	public NameSurferMappedReader(NameSurferStore store, long firstLine) {
+		this.store = store;
+		ranks = new int[store.getColumns()];
+		line = firstLine;
+	}
+
+	/* Method: read(filename) */
+	/**
+	 * Maps the file and parses all of its lines into the store.
+	 */
+	public void read(String filename) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			long size = channel.size();
+			long position = 0;
+			while (position < size) {
+				int length = (int) Math.min(MAX_REGION, size - position);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				int end = length;
+				if (position + length < size) { // last line may continue in next region
+					end = lastLineEnd(buffer, length);
+				}
+				parse(buffer, 0, end);
+				position += end;
+			}
+		} catch (IOException e) {
+			throw new IOException("Could not parse " + filename + ": " + e.getMessage(), e);
+		}
+	}
+
+	/*
+	 * Returns index right after the last '\n' of the region, so next region
+	 * starts with a whole line
+	 */
+	private int lastLineEnd(ByteBuffer buffer, int length) throws IOException {
+		for (int i = length - 1; i >= 0; i--) {
+			if (buffer.get(i) == '\n') {
+				return i + 1;
+			}
+		}
+		throw new IOException("Line is longer than " + MAX_REGION + " bytes");
+	}
+
+	/* Method: parse(buffer, from, to) */
+	/**
+	 * Parses lines which are stored in bytes from..to of the buffer. Region
+	 * must start at the beginning of a line and end at the end of one.
+	 */
+	public void parse(ByteBuffer buffer, int from, int to) throws IOException {
+		int pos = from;
+		while (pos < to) {
+			pos = skipBlanks(buffer, pos, to);
+			if (pos < to && buffer.get(pos) != '\n') { // empty lines are skipped
+				pos = parseLine(buffer, pos, to);
+			}
+			pos++; // the '\n'
+			line++;
+		}
+	}
+
+	/*
+	 * Parses one line which starts with the name at pos, and returns position
+	 * of its '\n' (or to). Anything after the last rank is ignored
+	 */
+	private int parseLine(ByteBuffer buffer, int pos, int to) throws IOException {
+		int nameLength = 0;
+		while (pos < to && !isSpace(buffer.get(pos))) {
+			if (nameLength == nameBytes.length) {
+				nameBytes = Arrays.copyOf(nameBytes, 2 * nameLength);
+			}
+			nameBytes[nameLength++] = buffer.get(pos++);
+		}
+		String name = new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8);
+		for (int i = 0; i < ranks.length; i++) {
+			pos = skipBlanks(buffer, pos, to);
+			int start = pos;
+			int rank = 0;
+			while (pos < to && buffer.get(pos) >= '0' && buffer.get(pos) <= '9') {
+				rank = rank * 10 + (buffer.get(pos++) - '0');
+			}
+			if (pos == start && (pos == to || buffer.get(pos) == '\n')) {
+				throw new IOException("line " + line + ": expected " + ranks.length + " ranks of " + name + ", found " + i);
+			}
+			if (pos == start || (pos < to && !isSpace(buffer.get(pos)))) {
+				throw new IOException("line " + line + ": rank " + (i + 1) + " of " + name + " is not a number");
+			}
+			ranks[i] = rank;
+		}
+		int row = store.addName(name);
+		for (int i = 0; i < ranks.length; i++) {
+			store.setRank(row, i, ranks[i]);
+		}
+		while (pos < to && buffer.get(pos) != '\n') { // rest of line is ignored
+			pos++;
+		}
+		return pos;
+	}
+
+	/*
+	 * Skips spaces inside a line, but not its end
+	 */
+	private int skipBlanks(ByteBuffer buffer, int pos, int to) {
+		while (pos < to && isSpace(buffer.get(pos)) && buffer.get(pos) != '\n') {
+			pos++;
+		}
+		return pos;
+	}
+
+	private boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * File: NameSurferParallelLoader.java
+ * -----------------------------------
+ * This class loads the data file on several threads. The file is
+ * split into byte ranges which start and end on line breaks, and
+ * every range is mapped and parsed by a ForkJoinPool worker into
+ * its own small NameSurferStore. At the end partial stores are
+ * appended in file order, so the result is the same as reading the
+ * file line by line.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class NameSurferParallelLoader implements NameSurferConstants {
+
+	// biggest chunk of file which is parsed by one task
+	private static final int MAX_CHUNK = 1 << 30;
+	// smallest chunk, smaller files are not worth splitting
+	private static final int MIN_CHUNK = 1 << 16;
+	// how many chunks every thread gets, so fast threads can help slow ones
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/* Instance variables */
+	// number of threads which parse the file
+	private int parallelism;
+
+	/**
+	 * Creates a loader which parses files on the given number of threads.
+	 */
+	public NameSurferParallelLoader(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/* Method: load(filename, store) */
+	/**
+	 * Parses the whole file into store.
+	 */
+	public void load(String filename, NameSurferStore store) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			List<Callable<NameSurferStore>> tasks = new ArrayList<>();
+			long[] bounds = chunkBounds(channel);
+			for (int i = 0; i + 1 < bounds.length; i++) {
+				long from = bounds[i];
+				long to = bounds[i + 1];
+				tasks.add(() -> parseChunk(channel, from, to, store.getColumns()));
+			}
+			List<NameSurferStore> chunks = new ArrayList<>();
+			int names = store.size();
+			for (Future<NameSurferStore> future : pool.invokeAll(tasks)) {
+				chunks.add(future.get());
+				names += chunks.get(chunks.size() - 1).size();
+			}
+			// arrays are copied once, not once for every chunk
+			store.reserve(names);
+			for (NameSurferStore chunk : chunks) {
+				store.addAll(chunk);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Loading was interrupted", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			while (cause instanceof RuntimeException && cause.getCause() != null) {
+				cause = cause.getCause(); // pool wraps exceptions of callables, maybe twice
+			}
+			throw new IOException("Could not parse " + filename + ": " + cause.getMessage(), cause);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/*
+	 * Splits file into ranges, every range ends right after a '\n' (or at the
+	 * end of file). Returned array holds start of every range and end of file
+	 */
+	private long[] chunkBounds(FileChannel channel) throws IOException {
+		long size = channel.size();
+		long chunkSize = size / ((long) parallelism * CHUNKS_PER_THREAD) + 1;
+		chunkSize = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, chunkSize));
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(0L);
+		long position = 0;
+		while (position < size) {
+			long next = Math.min(size, position + chunkSize);
+			if (next < size) {
+				next = nextLineStart(channel, next, size);
+			}
+			bounds.add(next);
+			position = next;
+		}
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+		return result;
+	}
+
+	/*
+	 * Returns position right after the first '\n' at or after position
+	 */
+	private long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		while (position < size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/*
+	 * This is what one worker does: maps its range and parses it into its own
+	 * store
+	 */
+	private NameSurferStore parseChunk(FileChannel channel, long from, long to, int columns) throws IOException {
+		int length = (int) (to - from);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+		// about 30 bytes per line in our files, it is only a first guess
+		NameSurferStore store = new NameSurferStore(length / 30, columns);
+		try {
+			new NameSurferMappedReader(store).parse(buffer, 0, length);
+		} catch (IOException e) {
+			// lines were counted from start of range, a broken file is rare, so
+			// lines before it are counted only now and the range is parsed again
+			long firstLine = 1 + countLines(channel, from);
+			new NameSurferMappedReader(new NameSurferStore(16, columns), firstLine).parse(buffer, 0, length);
+			throw e; // not reached, parsing fails at the same line again
+		}
+		return store;
+	}
+
+	private long countLines(FileChannel channel, long to) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		long lines = 0;
+		long position = 0;
+		while (position < to) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), to - position));
+			int read = channel.read(buffer, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					lines++;
+				}
+			}
+			position += read;
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * File: NameSurferPrefixIndex.java
+ * --------------------------------
+ * This class is a prefix index over names of a NameSurferStore.
+ * It keeps all lowercased names in one sorted array, so names
+ * which start with the same prefix are next to each other and
+ * can be found with a binary search, without looking at any
+ * other name.
+ */
+
+import java.util.*;
+
+public class NameSurferPrefixIndex {
+
+	/* Instance variables */
+	// store which names come from
+	private final NameSurferStore store;
+	// lowercased names, sorted alphabetically
+	private final String[] sortedNames;
+
+	/**
+	 * Builds the index over all names of the store.
+	 */
+	public NameSurferPrefixIndex(NameSurferStore store) {
+		this.store = store;
+		String[] names = new String[store.size()];
+		int count = 0;
+		for (int row = 0; row < store.size(); row++) {
+			if (!store.isReplaced(row)) { // older duplicates are not in database
+				names[count++] = store.getName(row).toLowerCase();
+			}
+		}
+		sortedNames = Arrays.copyOf(names, count);
+		Arrays.sort(sortedNames);
+	}
+
+	/**
+	 * Creates an index over a store which has the same names as the store of
+	 * other index (a reloaded file whose ranks were corrected). Sorted names
+	 * are shared, nothing is sorted again.
+	 */
+	public NameSurferPrefixIndex(NameSurferPrefixIndex other, NameSurferStore store) {
+		this.store = store;
+		sortedNames = other.sortedNames;
+	}
+
+	/* Method: suggest(prefix, limit) */
+	/**
+	 * Returns at most limit names (as they appear in data file) which start
+	 * with prefix, ignoring case, in alphabetical order. Empty prefix gives no
+	 * suggestions.
+	 */
+	public List<String> suggest(String prefix, int limit) {
+		List<String> result = new ArrayList<>();
+		String lowerCasePrefix = prefix.toLowerCase();
+		if (lowerCasePrefix.isEmpty()) {
+			return result;
+		}
+		int i = firstNotBefore(lowerCasePrefix);
+		while (i < sortedNames.length && result.size() < limit && sortedNames[i].startsWith(lowerCasePrefix)) {
+			result.add(store.getName(store.findRow(sortedNames[i])));
+			i++;
+		}
+		return result;
+	}
+
+	/*
+	 * Binary search: returns index of first name which is not alphabetically
+	 * before prefix
+	 */
+	private int firstNotBefore(String prefix) {
+		int low = 0;
+		int high = sortedNames.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sortedNames[middle].compareTo(prefix) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
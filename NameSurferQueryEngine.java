@@ -0,0 +1,201 @@
+/*
+ * File: NameSurferQueryEngine.java
+ * --------------------------------
+ * This class answers ranking queries over the per-decade index:
+ * most popular names of one decade (any page of them), and most
+ * popular names of a range of decades, by best rank or by mean
+ * rank. Nothing scans all names. Best rank walks the sorted lists
+ * of the decades together and stops after N names. Mean rank uses
+ * the threshold algorithm: lists are read one position at a time
+ * and reading stops as soon as no unread name can beat the N best
+ * names found so far.
+ */
+
+import java.util.Arrays;
+
+public class NameSurferQueryEngine implements NameSurferConstants {
+
+	/* Instance variables */
+	private final NameSurferStore store;
+	private final NameSurferDecadeIndex decadeIndex;
+	// rank counted for a decade in which name was not ranked (mean rank only)
+	private final int unranked;
+
+	/**
+	 * Creates an engine over the store and its decade index. Ranks of the
+	 * store go up to maxRank.
+	 */
+	public NameSurferQueryEngine(NameSurferStore store, NameSurferDecadeIndex decadeIndex, int maxRank) {
+		this.store = store;
+		this.decadeIndex = decadeIndex;
+		unranked = maxRank + 1;
+	}
+
+	/* Method: page(decade, offset, count) */
+	/**
+	 * Returns count names of the decade which follow the offset most popular
+	 * ones, so big rankings can be shown page by page.
+	 */
+	public NameSurferRanking page(int decade, int offset, int count) {
+		int from = Math.min(Math.max(0, offset), decadeIndex.rankedCount(decade));
+		int to = Math.min(decadeIndex.rankedCount(decade), from + Math.max(0, count));
+		int[] rows = new int[to - from];
+		int[] ranks = new int[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = decadeIndex.rowAt(decade, from + i);
+			ranks[i] = store.getRank(rows[i], decade);
+		}
+		return ranking(rows, ranks);
+	}
+
+	/* Method: topByBestRank(firstDecade, lastDecade, n) */
+	/**
+	 * Returns at most n names with the best (smallest) rank reached in any of
+	 * the decades firstDecade..lastDecade. Sorted lists of decades are merged
+	 * like in merge sort, so a name is met first at its best rank.
+	 */
+	public NameSurferRanking topByBestRank(int firstDecade, int lastDecade, int n) {
+		int decades = lastDecade - firstDecade + 1;
+		int[] positions = new int[decades];
+		int[] rows = new int[Math.max(0, n)];
+		int[] ranks = new int[rows.length];
+		IntSet seen = new IntSet(rows.length * decades);
+		int count = 0;
+		while (count < rows.length) {
+			int best = -1; // decade whose next row has the smallest rank
+			int bestRank = 0;
+			int bestRow = 0;
+			for (int d = 0; d < decades; d++) {
+				int decade = firstDecade + d;
+				if (positions[d] == decadeIndex.rankedCount(decade)) {
+					continue;
+				}
+				int row = decadeIndex.rowAt(decade, positions[d]);
+				int rank = store.getRank(row, decade);
+				if (best == -1 || rank < bestRank || (rank == bestRank && row < bestRow)) {
+					best = d;
+					bestRank = rank;
+					bestRow = row;
+				}
+			}
+			if (best == -1) { // all lists are read
+				break;
+			}
+			positions[best]++;
+			if (seen.add(bestRow)) {
+				rows[count] = bestRow;
+				ranks[count] = bestRank;
+				count++;
+			}
+		}
+		return ranking(Arrays.copyOf(rows, count), Arrays.copyOf(ranks, count));
+	}
+
+	/* Method: topByMeanRank(firstDecade, lastDecade, n) */
+	/**
+	 * Returns at most n names with the best mean rank over decades
+	 * firstDecade..lastDecade. A decade in which name was not ranked counts as
+	 * rank maxRank + 1, and names ranked in none of them are left out. Ranks
+	 * of the ranking are means rounded to whole numbers.
+	 */
+	public NameSurferRanking topByMeanRank(int firstDecade, int lastDecade, int n) {
+		if (n <= 0) {
+			return ranking(new int[0], new int[0]);
+		}
+		int decades = lastDecade - firstDecade + 1;
+		int[] positions = new int[decades];
+		// n best names so far, sum of ranks is enough to compare means
+		NameSurferRankHeap best = new NameSurferRankHeap(n);
+		IntSet seen = new IntSet(64);
+		boolean read = true;
+		while (read) {
+			read = false;
+			int threshold = 0; // smallest sum any unread name can have
+			for (int d = 0; d < decades; d++) {
+				int decade = firstDecade + d;
+				if (positions[d] == decadeIndex.rankedCount(decade)) {
+					threshold += unranked;
+					continue;
+				}
+				int row = decadeIndex.rowAt(decade, positions[d]++);
+				threshold += store.getRank(row, decade);
+				read = true;
+				if (seen.add(row)) {
+					best.offer(row, sumOfRanks(row, firstDecade, lastDecade));
+				}
+			}
+			if (best.size() == best.capacity() && best.worstKey() < threshold) {
+				break; // nobody we haven't seen can get into the best n
+			}
+		}
+		int[] rows = best.sortedRows();
+		int[] ranks = new int[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			ranks[i] = Math.round(sumOfRanks(rows[i], firstDecade, lastDecade) / (float) decades);
+		}
+		return ranking(rows, ranks);
+	}
+
+	private int sumOfRanks(int row, int firstDecade, int lastDecade) {
+		int sum = 0;
+		for (int decade = firstDecade; decade <= lastDecade; decade++) {
+			int rank = store.getRank(row, decade);
+			sum += (rank == 0) ? unranked : rank;
+		}
+		return sum;
+	}
+
+	private NameSurferRanking ranking(int[] rows, int[] ranks) {
+		NameSurferEntry[] entries = new NameSurferEntry[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			entries[i] = store.getEntry(rows[i]);
+		}
+		return new NameSurferRanking(entries, ranks);
+	}
+
+	/*
+	 * Small set of non-negative ints with open addressing, so rows don't have
+	 * to be boxed to remember which ones were already seen
+	 */
+	private static class IntSet {
+		private int[] slots;
+		private int size;
+
+		private IntSet(int expected) {
+			slots = new int[Integer.highestOneBit(Math.max(8, expected * 2)) * 2];
+			Arrays.fill(slots, -1);
+		}
+
+		/*
+		 * Returns true if value was not in set before
+		 */
+		private boolean add(int value) {
+			if (2 * (size + 1) > slots.length) {
+				grow();
+			}
+			int mask = slots.length - 1;
+			int i = (value * 0x9E3779B9) & mask;
+			while (slots[i] != -1) {
+				if (slots[i] == value) {
+					return false;
+				}
+				i = (i + 1) & mask;
+			}
+			slots[i] = value;
+			size++;
+			return true;
+		}
+
+		private void grow() {
+			int[] old = slots;
+			slots = new int[old.length * 2];
+			Arrays.fill(slots, -1);
+			size = 0;
+			for (int value : old) {
+				if (value != -1) {
+					add(value);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * File: NameSurferRankHeap.java
+ * -----------------------------
+ * This class is a bounded heap of rows of NameSurferStore. It
+ * remembers only the rows with the smallest keys (for example the
+ * most popular names of a decade, because low rank means high
+ * popularity), so it can be filled in one pass while the data is
+ * loading. It works on primitive ints only, nothing is boxed.
+ */
+
+public class NameSurferRankHeap {
+
+	/* Instance variables */
+	// rows and their keys, stored as a max-heap (largest key on top)
+	private int[] rows;
+	private int[] keys;
+	// number of rows currently in heap
+	private int size;
+
+	/**
+	 * Creates a heap which keeps at most capacity rows.
+	 */
+	public NameSurferRankHeap(int capacity) {
+		rows = new int[capacity];
+		keys = new int[capacity];
+	}
+
+	/* Method: offer(row, key) */
+	/**
+	 * Offers a row to the heap. It is kept only if it is among capacity
+	 * smallest keys seen so far.
+	 */
+	public void offer(int row, int key) {
+		if (rows.length == 0) {
+			return;
+		}
+		if (size < rows.length) {
+			rows[size] = row;
+			keys[size] = key;
+			siftUp(size++);
+		} else if (key < keys[0] || (key == keys[0] && row < rows[0])) { // better than worst one we keep
+			rows[0] = row;
+			keys[0] = key;
+			siftDown(0);
+		}
+	}
+
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (!greater(i, parent)) {
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i) {
+		while (true) {
+			int largest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < size && greater(left, largest)) {
+				largest = left;
+			}
+			if (right < size && greater(right, largest)) {
+				largest = right;
+			}
+			if (largest == i) {
+				return;
+			}
+			swap(i, largest);
+			i = largest;
+		}
+	}
+
+	/*
+	 * Compares two places of heap by key, and by row when keys are equal
+	 */
+	private boolean greater(int i, int j) {
+		return keys[i] > keys[j] || (keys[i] == keys[j] && rows[i] > rows[j]);
+	}
+
+	private void swap(int i, int j) {
+		int row = rows[i];
+		rows[i] = rows[j];
+		rows[j] = row;
+		int key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+	}
+
+	/* Method: sortedRows() */
+	/**
+	 * Empties the heap and returns its rows sorted by key, smallest first.
+	 */
+	public int[] sortedRows() {
+		int[] result = new int[size];
+		for (int i = size - 1; i >= 0; i--) {
+			result[i] = rows[0]; // top of heap is largest of remaining ones
+			size--;
+			rows[0] = rows[size];
+			keys[0] = keys[size];
+			siftDown(0);
+		}
+		return result;
+	}
+
+	/* Method: worstKey() */
+	/**
+	 * Returns the largest key in the heap. Heap must not be empty.
+	 */
+	public int worstKey() {
+		return keys[0];
+	}
+
+	/* Method: capacity() */
+	/**
+	 * Returns the most rows this heap can keep.
+	 */
+	public int capacity() {
+		return rows.length;
+	}
+
+	/* Method: size() */
+	/**
+	 * Returns the number of rows in the heap.
+	 */
+	public int size() {
+		return size;
+	}
+}
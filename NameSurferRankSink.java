@@ -0,0 +1,19 @@
+/*
+ * File: NameSurferRankSink.java
+ * -----------------------------
+ * This interface receives answers of a batch lookup, see
+ * NameSurferDataBase.findRanks. The name is given as a piece of
+ * the text it was read from, and the ranks array is reused for
+ * every name of the batch, so nothing is allocated per name. A
+ * sink which wants to keep them must copy them.
+ */
+
+public interface NameSurferRankSink {
+
+	/**
+	 * Receives the name which is the piece of names from start (included) to
+	 * end (not included), with its ranks, or with null ranks if it is not in
+	 * the database.
+	 */
+	void accept(CharSequence names, int start, int end, int[] ranks);
+}
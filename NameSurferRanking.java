@@ -0,0 +1,48 @@
+/*
+ * File: NameSurferRanking.java
+ * ----------------------------
+ * This class is an answer of a ranking query: a list of entries,
+ * most popular first, with the rank every entry got in that query.
+ * For one decade it is just the rank of the decade, for several
+ * decades it is the best or the mean rank over them. Rankings of
+ * NameSurferTrends hold the number of places climbed or fallen.
+ */
+
+public class NameSurferRanking {
+
+	/* Instance variables */
+	private final NameSurferEntry[] entries;
+	private final int[] ranks;
+
+	/**
+	 * Creates a ranking, ranks[i] is the rank of entries[i].
+	 */
+	public NameSurferRanking(NameSurferEntry[] entries, int[] ranks) {
+		this.entries = entries;
+		this.ranks = ranks;
+	}
+
+	/* Method: size() */
+	/**
+	 * Returns the number of entries in the ranking.
+	 */
+	public int size() {
+		return entries.length;
+	}
+
+	/* Method: getEntry(i) */
+	/**
+	 * Returns i-th most popular entry of the ranking.
+	 */
+	public NameSurferEntry getEntry(int i) {
+		return entries[i];
+	}
+
+	/* Method: getRank(i) */
+	/**
+	 * Returns rank of i-th entry in this ranking.
+	 */
+	public int getRank(int i) {
+		return ranks[i];
+	}
+}
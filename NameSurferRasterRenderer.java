@@ -0,0 +1,138 @@
+/*
+ * File: NameSurferRasterRenderer.java
+ * -----------------------------------
+ * This class draws the graph of names into a BufferedImage instead
+ * of building GLines and GLabels. Grid and decade labels are drawn
+ * once for every size of graph and kept in a background image,
+ * names are drawn on top of a copy of it as Path2D polylines. It
+ * is meant for graphs with so many names that one object per line
+ * and per label becomes too slow. Lines are not antialiased, with
+ * it drawing thousands of names was about ten times slower.
+ */
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+public class NameSurferRasterRenderer implements NameSurferConstants {
+
+	/* Instance variables */
+	// grid and decade labels for the size of the last frame
+	private BufferedImage background;
+	// background with names drawn on it, reused while size doesn't change
+	private BufferedImage frame;
+	// draw names next to their lines, or only lines
+	private boolean drawLabels;
+	// shape of data which is drawn
+	private NameSurferDataSet dataSet;
+
+	/**
+	 * Creates a renderer for data of names-data.txt. If drawLabels is false,
+	 * only lines of names are drawn, which is what we want for thousands of
+	 * names.
+	 */
+	public NameSurferRasterRenderer(boolean drawLabels) {
+		this(drawLabels, NameSurferDataSet.DEFAULT);
+	}
+
+	/**
+	 * Creates a renderer for data of the given dataset.
+	 */
+	public NameSurferRasterRenderer(boolean drawLabels, NameSurferDataSet dataSet) {
+		this.drawLabels = drawLabels;
+		this.dataSet = dataSet;
+	}
+
+	/* Method: render(entries, width, height) */
+	/**
+	 * Draws all entries on a fresh copy of background and returns the image.
+	 * The same image object is returned while size stays the same.
+	 */
+	public BufferedImage render(List<NameSurferEntry> entries, int width, int height) {
+		NameSurferLayout layout = new NameSurferLayout(Math.max(1, width), Math.max(1, height), dataSet);
+		prepareFrame(layout);
+		Graphics2D g = frame.createGraphics();
+		for (int j = 0; j < entries.size(); j++) {
+			drawEntry(g, layout, entries.get(j), NameSurferLayout.chooseColor(j));
+		}
+		g.dispose();
+		return frame;
+	}
+
+	/* Method: addEntry(entry, j) */
+	/**
+	 * Draws one more entry (j-th on the graph) on the last rendered image,
+	 * nothing else is drawn again.
+	 */
+	public BufferedImage addEntry(NameSurferEntry entry, int j) {
+		NameSurferLayout layout = new NameSurferLayout(frame.getWidth(), frame.getHeight(), dataSet);
+		Graphics2D g = frame.createGraphics();
+		drawEntry(g, layout, entry, NameSurferLayout.chooseColor(j));
+		g.dispose();
+		return frame;
+	}
+
+	/*
+	 * Background is drawn again only when size changes, frame starts as its
+	 * copy
+	 */
+	private void prepareFrame(NameSurferLayout layout) {
+		int width = layout.getWidth();
+		int height = layout.getHeight();
+		if (background == null || background.getWidth() != width || background.getHeight() != height) {
+			background = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			drawBackground(layout);
+		}
+		frame.setData(background.getRaster());
+	}
+
+	/*
+	 * That's how initial graph will look alike: two horizontal lines, vertical
+	 * line and label for every decade (every labelled column)
+	 */
+	private void drawBackground(NameSurferLayout layout) {
+		int width = layout.getWidth();
+		int height = layout.getHeight();
+		Graphics2D g = background.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+		g.setColor(Color.BLACK);
+		g.drawLine(0, GRAPH_MARGIN_SIZE, width, GRAPH_MARGIN_SIZE); // top
+		g.drawLine(0, height - GRAPH_MARGIN_SIZE, width, height - GRAPH_MARGIN_SIZE); // bottom
+		for (int column : layout.labelColumns()) {
+			int x = (int) layout.xForDecade(column);
+			g.drawLine(x, 0, x, height);
+			g.drawString(layout.yearLabel(column), x + COORDINATE_SENSITIVITY, height - COORDINATE_SENSITIVITY);
+		}
+		g.dispose();
+	}
+
+	/*
+	 * Whole graph of a name is one polyline, so it is one draw call. It goes
+	 * only through points the layout keeps, so it is never finer than pixels
+	 */
+	private void drawEntry(Graphics2D g, NameSurferLayout layout, NameSurferEntry entry, Color color) {
+		g.setColor(color);
+		Path2D.Double path = new Path2D.Double();
+		int[] points = layout.pointColumns(entry);
+		for (int i = 0; i < points.length; i++) {
+			double x = layout.xForDecade(points[i]);
+			double y = layout.yForRank(entry.getRank(points[i]));
+			if (i == 0) {
+				path.moveTo(x, y);
+			} else {
+				path.lineTo(x, y);
+			}
+		}
+		if (drawLabels) {
+			for (int column : layout.labelColumns()) {
+				double x = layout.xForDecade(column);
+				double y = layout.yForRank(entry.getRank(column));
+				g.drawString(NameSurferLayout.labelOf(entry, column), (float) (x + COORDINATE_SENSITIVITY), (float) y);
+			}
+		}
+		g.draw(path);
+	}
+}
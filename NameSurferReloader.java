@@ -0,0 +1,157 @@
+/*
+ * File: NameSurferReloader.java
+ * -----------------------------
+ * This class watches the data file of a database and loads it
+ * again when it changes, so corrected ranks show up without
+ * restarting the program. The new database is built on a
+ * background thread while the old one still answers queries, and
+ * then it simply replaces the old one. Whoever asks for the
+ * database gets either the old one or the new one, never a half
+ * loaded one. Editors often save a file in a few steps, so the
+ * reload waits until the file was quiet for a while.
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class NameSurferReloader {
+
+	// how long the file must not change before it is reloaded, in milliseconds
+	private static final long QUIET_TIME = 300;
+
+	/**
+	 * Listener is told about every reload. It is called on the thread of the
+	 * reloader, not on Swing event thread.
+	 */
+	public interface Listener {
+		/**
+		 * Base is the new database, changedNames are lowercased names whose
+		 * ranks changed and names which were added or removed.
+		 */
+		void reloaded(NameSurferDataBase base, Set<String> changedNames);
+	}
+
+	/* Instance variables */
+	// database which is used now
+	private AtomicReference<NameSurferDataBase> current;
+	private File file;
+	// length and modification time of the file which was loaded last
+	private long loadedLength;
+	private long loadedModified;
+	private List<Listener> listeners = new CopyOnWriteArrayList<>();
+	private WatchService watcher;
+	private Thread thread;
+
+	/**
+	 * Starts watching the data file of the database. Reloads start once the
+	 * database is completely loaded.
+	 */
+	public NameSurferReloader(NameSurferDataBase base) throws IOException {
+		current = new AtomicReference<>(base);
+		file = new File(base.getDataSet().getFilename()).getAbsoluteFile();
+		loadedLength = file.length();
+		loadedModified = file.lastModified();
+		watcher = FileSystems.getDefault().newWatchService();
+		file.getParentFile().toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		thread = new Thread(this::watch, "NameSurfer reloader");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/* Method: get() */
+	/**
+	 * Returns the database which is used now.
+	 */
+	public NameSurferDataBase get() {
+		return current.get();
+	}
+
+	/* Method: addListener(listener) */
+	/**
+	 * Adds a listener which is told about every reload.
+	 */
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/* Method: close() */
+	/**
+	 * Stops watching the file. The database which is used now stays.
+	 */
+	public void close() {
+		thread.interrupt();
+		try {
+			watcher.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/*
+	 * Waits for changes in the directory of the file. After a change of our
+	 * file, events keep being swallowed until there were none for QUIET_TIME
+	 */
+	private void watch() {
+		try {
+			while (true) {
+				if (changed(watcher.take())) {
+					while (true) {
+						WatchKey key = watcher.poll(QUIET_TIME, TimeUnit.MILLISECONDS);
+						if (key == null) {
+							break;
+						}
+						changed(key);
+					}
+					reloadIfModified();
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// closed, nothing more to watch
+		}
+	}
+
+	/*
+	 * Returns true if some event of the key is about our file. Key must be
+	 * reset, otherwise it doesn't get any more events
+	 */
+	private boolean changed(WatchKey key) {
+		boolean ours = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (file.getName().equals(String.valueOf(event.context()))) {
+				ours = true;
+			}
+		}
+		key.reset();
+		return ours;
+	}
+
+	/*
+	 * Some systems send events when the file was only touched, so it is
+	 * reloaded only if it is really different
+	 */
+	private void reloadIfModified() {
+		long length = file.length();
+		long modified = file.lastModified();
+		if (length == loadedLength && modified == loadedModified) {
+			return;
+		}
+		NameSurferDataBase old = current.get();
+		try {
+			NameSurferDataBase base = old.reload();
+			loadedLength = length;
+			loadedModified = modified;
+			Set<String> changedNames = base.changedNames(old);
+			current.set(base);
+			for (Listener listener : listeners) {
+				listener.reloaded(base, changedNames);
+			}
+		} catch (IOException | RuntimeException e) {
+			// a broken file is not loaded, the old database stays
+			e.printStackTrace();
+		}
+	}
+}
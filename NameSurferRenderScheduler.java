@@ -0,0 +1,78 @@
+/*
+ * File: NameSurferRenderScheduler.java
+ * ------------------------------------
+ * This class coalesces requests for redrawing a graph. When window
+ * is being resized, Swing sends a lot of resize events, but the
+ * graph is redrawn at most once per FRAME_INTERVAL milliseconds,
+ * with the size window has at that moment. It also counts how many
+ * times the graph was actually redrawn during the last second.
+ */
+
+import java.awt.event.*;
+import java.util.ArrayDeque;
+
+import javax.swing.Timer;
+
+public class NameSurferRenderScheduler implements NameSurferConstants, ActionListener {
+
+	/* Instance variables */
+	// what should be done to redraw the graph
+	private Runnable render;
+	// fires once, FRAME_INTERVAL after the first request
+	private Timer timer;
+	// times of renders during the last second, oldest first
+	private ArrayDeque<Long> renderTimes = new ArrayDeque<>();
+
+	/**
+	 * Creates a scheduler which runs render on Swing event thread whenever a
+	 * redraw is due.
+	 */
+	public NameSurferRenderScheduler(Runnable render) {
+		this.render = render;
+		timer = new Timer(FRAME_INTERVAL, this);
+		timer.setRepeats(false);
+	}
+
+	/* Method: request() */
+	/**
+	 * Asks for a redraw. All requests which come before the redraw happens are
+	 * answered by that one redraw.
+	 */
+	public void request() {
+		if (!timer.isRunning()) {
+			timer.start();
+		}
+	}
+
+	public void actionPerformed(ActionEvent e) {
+		render.run();
+		countRender();
+	}
+
+	private void countRender() {
+		long now = System.nanoTime();
+		renderTimes.addLast(now);
+		forgetOldRenders(now);
+	}
+
+	/*
+	 * Renders which happened more than a second ago are not counted anymore,
+	 * so at most 1000 / FRAME_INTERVAL times are kept
+	 */
+	private void forgetOldRenders(long now) {
+		while (!renderTimes.isEmpty() && now - renderTimes.peekFirst() >= 1000000000L) {
+			renderTimes.removeFirst();
+		}
+	}
+
+	/* Method: getRendersPerSecond() */
+	/**
+	 * Returns how many redraws happened during the second which ended right
+	 * now, so it drops to 0 once the graph stops being redrawn. Call it on
+	 * Swing event thread.
+	 */
+	public int getRendersPerSecond() {
+		forgetOldRenders(System.nanoTime());
+		return renderTimes.size();
+	}
+}
@@ -0,0 +1,379 @@
+/*
+ * File: NameSurferServer.java
+ * ---------------------------
+ * This program answers rank queries over HTTP, so other programs
+ * can use the database without the Swing window. It uses the HTTP
+ * server which comes with the JDK and listens only on localhost.
+ * All answers are JSON:
+ *   GET  /entry?name=Sam               one name and its ranks
+ *   GET  /batch?names=Sam,Eric         many names, null for missing
+ *   POST /batch                        same, names in the body
+ *   GET  /suggest?prefix=sa&limit=8    names starting with prefix
+ *   GET  /top?year=1950&n=10           most popular names of a decade
+ *   GET  /stats                        latency histograms and cache
+ * Answers of GET requests are kept in a small LRU cache, which is
+ * dropped whenever the data file is reloaded. Run it with
+ * java NameSurferServer [port] [dataFile]
+ */
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.*;
+
+public class NameSurferServer implements NameSurferConstants {
+
+	// port used if none is given
+	private static final int DEFAULT_PORT = 8080;
+	// most answers kept in cache
+	private static final int CACHE_SIZE = 10000;
+	// most names in one batch request
+	private static final int MAX_BATCH = 10000;
+	// most bytes of a request body, plenty for MAX_BATCH names
+	private static final int MAX_BODY = 1 << 20;
+	// threads answering requests, per processor (they mostly wait for network)
+	private static final int THREADS_PER_PROCESSOR = 4;
+
+	/*
+	 * Something which answers a request with JSON, or null if the thing asked
+	 * for doesn't exist. Bad parameters throw IllegalArgumentException
+	 */
+	private interface Query {
+		String answer(NameSurferDataBase base, Map<String, String> parameters, String body);
+	}
+
+	/*
+	 * Database with the cache of its answers, they are replaced together, so
+	 * an answer of an old database never gets into the cache of a new one
+	 */
+	private static class Generation {
+		private final NameSurferDataBase base;
+		private final Map<String, byte[]> cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		});
+
+		private Generation(NameSurferDataBase base) {
+			this.base = base;
+		}
+	}
+
+	/* Instance variables */
+	private HttpServer server;
+	private ExecutorService workers;
+	private volatile Generation generation;
+	// latency of every endpoint, in the order they were added
+	private Map<String, NameSurferLatencyHistogram> latencies = new LinkedHashMap<>();
+	private AtomicLong cacheHits = new AtomicLong();
+	private AtomicLong cacheMisses = new AtomicLong();
+
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		String filename = (args.length > 1) ? args[1] : NAMES_DATA_FILE;
+		NameSurferDataBase base = NameSurferDataBase.loadInBackground(NameSurferDataSet.DEFAULT.withFile(filename),
+				NameSurferLoadMode.SNAPSHOT);
+		NameSurferServer server = new NameSurferServer(base, port);
+		try {
+			NameSurferReloader reloader = new NameSurferReloader(base);
+			reloader.addListener((newBase, changedNames) -> server.setDataBase(newBase));
+		} catch (IOException e) {
+			e.printStackTrace(); // server works, only without reloading
+		}
+		server.start();
+		System.out.println("NameSurfer server on http://localhost:" + server.getPort() + "/");
+	}
+
+	/**
+	 * Creates a server answering queries of the database on the given port of
+	 * localhost (0 picks any free port). It doesn't answer until started.
+	 */
+	public NameSurferServer(NameSurferDataBase base, int port) throws IOException {
+		generation = new Generation(base);
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		addEndpoint("/entry", "GET", this::entry);
+		addEndpoint("/batch", "GET POST", this::batch);
+		addEndpoint("/suggest", "GET", this::suggest);
+		addEndpoint("/top", "GET", this::top);
+		addEndpoint("/stats", "GET", null);
+		workers = Executors.newFixedThreadPool(THREADS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors(),
+				runnable -> new Thread(runnable, "NameSurfer server"));
+		server.setExecutor(workers);
+	}
+
+	/* Method: start() */
+	/**
+	 * Starts answering requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/* Method: stop() */
+	/**
+	 * Stops answering requests, requests which are being answered get one
+	 * second to finish.
+	 */
+	public void stop() {
+		server.stop(1);
+		workers.shutdown();
+	}
+
+	/* Method: getPort() */
+	/**
+	 * Returns the port the server listens on.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/* Method: setDataBase(base) */
+	/**
+	 * Makes the server answer from another database, for example after the
+	 * data file was reloaded. Cached answers of the old one are dropped.
+	 */
+	public void setDataBase(NameSurferDataBase base) {
+		generation = new Generation(base);
+	}
+
+	/*
+	 * Registers a handler of path which accepts given methods. Stats have no
+	 * query, they are answered here, and never cached
+	 */
+	private void addEndpoint(String path, String methods, Query query) {
+		NameSurferLatencyHistogram latency = new NameSurferLatencyHistogram();
+		latencies.put(path, latency);
+		server.createContext(path, exchange -> {
+			long start = System.nanoTime();
+			try {
+				if (!path.equals(exchange.getRequestURI().getPath())) {
+					send(exchange, 404, error("no such endpoint"), false);
+				} else if (!Arrays.asList(methods.split(" ")).contains(exchange.getRequestMethod())) {
+					exchange.getResponseHeaders().set("Allow", methods.replace(' ', ','));
+					send(exchange, 405, error("method not allowed"), false);
+				} else if (query == null) {
+					send(exchange, 200, stats().getBytes(StandardCharsets.UTF_8), false);
+				} else {
+					answer(exchange, query);
+				}
+			} catch (IOException e) {
+				e.printStackTrace(); // client went away, nothing to answer
+			} finally {
+				exchange.close();
+				latency.record(System.nanoTime() - start);
+			}
+		});
+	}
+
+	/*
+	 * Answers from cache if it can, otherwise asks the query. Only complete
+	 * answers of GET requests are cached: while the database is still loading
+	 * suggestions are empty, and such answers must not stay
+	 */
+	private void answer(HttpExchange exchange, Query query) throws IOException {
+		Generation current = generation;
+		boolean get = "GET".equals(exchange.getRequestMethod());
+		String key = exchange.getRequestURI().toString();
+		byte[] cached = get ? current.cache.get(key) : null;
+		if (cached != null) {
+			cacheHits.incrementAndGet();
+			send(exchange, 200, cached, true);
+			return;
+		}
+		cacheMisses.incrementAndGet();
+		String json;
+		try {
+			String body = get ? "" : readBody(exchange);
+			if (body == null) {
+				send(exchange, 413, error("body is longer than " + MAX_BODY + " bytes"), false);
+				return;
+			}
+			json = query.answer(current.base, parameters(exchange.getRequestURI()), body);
+		} catch (IllegalArgumentException e) {
+			send(exchange, 400, error(e.getMessage()), false);
+			return;
+		}
+		if (json == null) {
+			send(exchange, 404, error("not found"), false);
+			return;
+		}
+		byte[] response = json.getBytes(StandardCharsets.UTF_8);
+		if (get && current.base.isLoaded()) {
+			current.cache.put(key, response);
+		}
+		send(exchange, 200, response, false);
+	}
+
+	private void send(HttpExchange exchange, int status, byte[] response, boolean cached) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.getResponseHeaders().set("X-Cache", cached ? "hit" : "miss");
+		exchange.sendResponseHeaders(status, response.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(response);
+		}
+	}
+
+	private byte[] error(String message) {
+		return ("{\"error\":" + quote(message) + "}").getBytes(StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Returns body of the request, or null if it is longer than MAX_BODY, so a
+	 * client can't make the server hold any amount of memory
+	 */
+	private String readBody(HttpExchange exchange) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			// one byte more than allowed tells a too long body apart
+			byte[] body = in.readNBytes(MAX_BODY + 1);
+			return (body.length > MAX_BODY) ? null : new String(body, StandardCharsets.UTF_8);
+		}
+	}
+
+	/*
+	 * Decodes parameters of the query string, a parameter given twice keeps
+	 * its last value
+	 */
+	private Map<String, String> parameters(URI uri) {
+		Map<String, String> parameters = new HashMap<>();
+		String query = uri.getRawQuery();
+		if (query == null) {
+			return parameters;
+		}
+		for (String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = (equals < 0) ? pair : pair.substring(0, equals);
+			String value = (equals < 0) ? "" : pair.substring(equals + 1);
+			parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+					URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return parameters;
+	}
+
+	private String entry(NameSurferDataBase base, Map<String, String> parameters, String body) {
+		NameSurferEntry entry = base.findEntry(required(parameters, "name"));
+		return (entry == null) ? null : entryJson(base, entry);
+	}
+
+	/*
+	 * Names are separated by commas or white space, in the names parameter or
+	 * in the body
+	 */
+	private String batch(NameSurferDataBase base, Map<String, String> parameters, String body) {
+		String list = parameters.containsKey("names") ? parameters.get("names") : body;
+		String[] names = list.trim().split("[,\\s]+");
+		if (names.length > MAX_BATCH) {
+			throw new IllegalArgumentException("at most " + MAX_BATCH + " names in one batch");
+		}
+		StringBuilder json = new StringBuilder("[");
+		for (String name : names) {
+			if (name.isEmpty()) {
+				continue; // empty list, or list starting with a comma
+			}
+			NameSurferEntry entry = base.findEntry(name);
+			json.append((json.length() > 1) ? "," : "").append((entry == null) ? "null" : entryJson(base, entry));
+		}
+		return json.append("]").toString();
+	}
+
+	private String suggest(NameSurferDataBase base, Map<String, String> parameters, String body) {
+		int limit = number(parameters, "limit", SUGGESTIONS, MAX_RANK);
+		StringBuilder json = new StringBuilder("[");
+		for (String name : base.suggest(required(parameters, "prefix"), limit)) {
+			json.append((json.length() > 1) ? "," : "").append(quote(name));
+		}
+		return json.append("]").toString();
+	}
+
+	private String top(NameSurferDataBase base, Map<String, String> parameters, String body) {
+		int year = number(parameters, "year", -1, Integer.MAX_VALUE);
+		int decade = base.getDataSet().columnOf(year);
+		if (decade < 0) {
+			throw new IllegalArgumentException("year " + year + " is not in the dataset");
+		}
+		int n = number(parameters, "n", TOP_NAMES, base.getDataSet().getMaxRank());
+		StringBuilder json = new StringBuilder("[");
+		for (NameSurferEntry entry : base.topN(decade, n)) {
+			json.append((json.length() > 1) ? "," : "");
+			json.append("{\"name\":").append(quote(entry.getName()));
+			json.append(",\"rank\":").append(entry.getRank(decade)).append("}");
+		}
+		return json.append("]").toString();
+	}
+
+	private String stats() {
+		StringBuilder json = new StringBuilder("{\"latency\":{");
+		boolean first = true;
+		for (Map.Entry<String, NameSurferLatencyHistogram> latency : latencies.entrySet()) {
+			json.append(first ? "" : ",");
+			first = false;
+			json.append(quote(latency.getKey())).append(":").append(latency.getValue().toJson());
+		}
+		json.append("},\"cache\":{\"hits\":").append(cacheHits.get());
+		json.append(",\"misses\":").append(cacheMisses.get());
+		json.append(",\"size\":").append(generation.cache.size()).append("}}");
+		return json.toString();
+	}
+
+	private String entryJson(NameSurferDataBase base, NameSurferEntry entry) {
+		NameSurferDataSet dataSet = base.getDataSet();
+		StringBuilder json = new StringBuilder();
+		json.append("{\"name\":").append(quote(entry.getName()));
+		json.append(",\"firstYear\":").append(dataSet.getFirstYear());
+		json.append(",\"step\":").append(dataSet.getStep());
+		json.append(",\"ranks\":[");
+		for (int i = 0; i < entry.getColumns(); i++) {
+			json.append((i > 0) ? "," : "").append(entry.getRank(i));
+		}
+		return json.append("]}").toString();
+	}
+
+	private String required(Map<String, String> parameters, String name) {
+		String value = parameters.get(name);
+		if (value == null || value.isEmpty()) {
+			throw new IllegalArgumentException("parameter " + name + " is missing");
+		}
+		return value;
+	}
+
+	/*
+	 * Returns number parameter between 1 and max, or defaultValue if it is
+	 * not given. Missing parameter with defaultValue -1 is an error
+	 */
+	private int number(Map<String, String> parameters, String name, int defaultValue, int max) {
+		String value = parameters.get(name);
+		if (value == null && defaultValue != -1) {
+			return defaultValue;
+		}
+		try {
+			int number = Integer.parseInt(required(parameters, name));
+			if (number < 1 || number > max) {
+				throw new IllegalArgumentException("parameter " + name + " must be between 1 and " + max);
+			}
+			return number;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("parameter " + name + " must be a number");
+		}
+	}
+
+	/*
+	 * Returns the string as a JSON string, with quotes
+	 */
+	private static String quote(String s) {
+		StringBuilder json = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < ' ') {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		return json.append("\"").toString();
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * File: NameSurferSimilarity.java
+ * -------------------------------
+ * This class finds names whose rank curves look like the curve of
+ * a given name. Every name is a vector of its ranks (unranked
+ * decades count as max rank + 1). Vectors of all names are copied
+ * once into one float array, for correlation they are normalized
+ * first (mean 0 and length 1), so a distance is just a short loop
+ * over two pieces of the array. A query scans blocks of rows on
+ * several threads with parallel streams, every block keeps its k
+ * nearest rows in a NameSurferRankHeap, and the blocks are merged.
+ */
+
+import java.util.stream.IntStream;
+
+public class NameSurferSimilarity implements NameSurferConstants {
+
+	// number of rows one thread scans at once
+	private static final int BLOCK = 8192;
+
+	/* Instance variables */
+	private final NameSurferStore store;
+	// number of ranks of every name
+	private final int columns;
+	// rank counted for a decade in which name was not ranked
+	private final int unranked;
+	// ranks of all rows as floats, built the first time they are needed
+	private float[] vectors;
+	// normalized ranks of all rows, built the first time they are needed
+	private float[] normalized;
+
+	/**
+	 * Creates a similarity search over all names of the store, whose ranks go
+	 * up to maxRank.
+	 */
+	public NameSurferSimilarity(NameSurferStore store, int maxRank) {
+		this.store = store;
+		columns = store.getColumns();
+		unranked = maxRank + 1;
+	}
+
+	/* Method: nearest(name, k, distance) */
+	/**
+	 * Returns at most k names whose curves are the closest to the curve of
+	 * name, closest first. The name itself is not among them. Returns empty
+	 * array if name is not in the database.
+	 */
+	public NameSurferEntry[] nearest(String name, int k, NameSurferDistance distance) {
+		int row = store.findRow(name);
+		if (row < 0 || k <= 0) {
+			return new NameSurferEntry[0];
+		}
+		float[] data = dataFor(distance);
+		int blocks = (store.size() + BLOCK - 1) / BLOCK;
+		int[][] nearestOfBlocks = IntStream.range(0, blocks).parallel()
+				.mapToObj(block -> nearestInBlock(data, distance, row, k, block))
+				.toArray(int[][]::new);
+		NameSurferRankHeap heap = new NameSurferRankHeap(k);
+		for (int[] rows : nearestOfBlocks) {
+			for (int other : rows) {
+				heap.offer(other, key(data, distance, row, other));
+			}
+		}
+		int[] rows = heap.sortedRows();
+		NameSurferEntry[] result = new NameSurferEntry[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			result[i] = store.getEntry(rows[i]);
+		}
+		return result;
+	}
+
+	/*
+	 * Returns k rows of the block closest to row, in no particular order
+	 */
+	private int[] nearestInBlock(float[] data, NameSurferDistance distance, int row, int k, int block) {
+		NameSurferRankHeap heap = new NameSurferRankHeap(k);
+		int last = Math.min(store.size(), (block + 1) * BLOCK);
+		for (int other = block * BLOCK; other < last; other++) {
+			if (other != row && !store.isReplaced(other)) {
+				heap.offer(other, key(data, distance, row, other));
+			}
+		}
+		return heap.sortedRows();
+	}
+
+	/*
+	 * Returns distance of two rows as heap key. Bits of a float which is not
+	 * negative are ordered just like the float itself, so an int is enough
+	 */
+	private int key(float[] data, NameSurferDistance distance, int row, int other) {
+		int a = row * columns;
+		int b = other * columns;
+		float result;
+		if (distance == NameSurferDistance.CORRELATION) {
+			float dot = 0;
+			for (int d = 0; d < columns; d++) {
+				dot += data[a + d] * data[b + d];
+			}
+			result = Math.max(0, 1 - dot);
+		} else {
+			float sum = 0; // squared distance is ordered like distance
+			for (int d = 0; d < columns; d++) {
+				float difference = data[a + d] - data[b + d];
+				sum += difference * difference;
+			}
+			result = sum;
+		}
+		return Float.floatToIntBits(result);
+	}
+
+	/*
+	 * Returns vectors the distance is measured on, they are built on the
+	 * first query which needs them
+	 */
+	private synchronized float[] dataFor(NameSurferDistance distance) {
+		if (vectors == null) {
+			vectors = new float[store.size() * columns];
+			for (int row = 0; row < store.size(); row++) {
+				for (int d = 0; d < columns; d++) {
+					int rank = store.getRank(row, d);
+					vectors[row * columns + d] = (rank == 0) ? unranked : rank;
+				}
+			}
+		}
+		if (distance == NameSurferDistance.EUCLIDEAN) {
+			return vectors;
+		}
+		if (normalized == null) {
+			normalized = normalize(vectors);
+		}
+		return normalized;
+	}
+
+	/*
+	 * Moves every row to mean 0 and scales it to length 1, then dot product of
+	 * two rows is their correlation. Rows which never change stay all 0, they
+	 * are not correlated with anything
+	 */
+	private float[] normalize(float[] vectors) {
+		float[] result = new float[vectors.length];
+		for (int start = 0; start < vectors.length; start += columns) {
+			float mean = 0;
+			for (int d = 0; d < columns; d++) {
+				mean += vectors[start + d];
+			}
+			mean /= columns;
+			float length = 0;
+			for (int d = 0; d < columns; d++) {
+				float value = vectors[start + d] - mean;
+				result[start + d] = value;
+				length += value * value;
+			}
+			if (length > 0) {
+				float scale = (float) (1 / Math.sqrt(length));
+				for (int d = 0; d < columns; d++) {
+					result[start + d] *= scale;
+				}
+			}
+		}
+		return result;
+	}
+}
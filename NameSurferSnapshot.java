@@ -0,0 +1,144 @@
+/*
+ * File: NameSurferSnapshot.java
+ * -----------------------------
+ * This class writes a NameSurferStore into a compact binary file
+ * and reads it back, so the text data file doesn't have to be
+ * parsed on every start. A snapshot remembers size and modification
+ * time of the text file it was made from, and it is not used when
+ * the text file has changed since or describes another shape of
+ * data (first year or number of columns).
+ *
+ * Layout of the file (big-endian):
+ *   int   MAGIC, int VERSION
+ *   long  length of text file, long its last modification time
+ *   int   first year, int number of columns, int number of names
+ *   names:  for every name, unsigned short length and its UTF-8 bytes
+ *   ranks:  number of names * columns unsigned shorts, row after row
+ */
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+public class NameSurferSnapshot {
+
+	// first bytes of every snapshot file ("NSRF")
+	private static final int MAGIC = 0x4E535246;
+	// changes whenever layout of file changes
+	private static final int VERSION = 1;
+
+	/* Instance variables */
+	// text data file
+	private File source;
+	// binary snapshot of that file
+	private File snapshot;
+	// shape of data in the file
+	private int firstYear;
+	private int columns;
+
+	/**
+	 * Creates a snapshot for the data file of the dataset. Snapshot is kept
+	 * next to it, with ".snap" added to its name.
+	 */
+	public NameSurferSnapshot(NameSurferDataSet dataSet) {
+		source = new File(dataSet.getFilename());
+		snapshot = new File(dataSet.getFilename() + ".snap");
+		firstYear = dataSet.getFirstYear();
+		columns = dataSet.getColumns();
+	}
+
+	/* Method: isFresh() */
+	/**
+	 * Returns true if snapshot exists and was made from the current version of
+	 * the text file, with the same first year and columns as the dataset.
+	 */
+	public boolean isFresh() {
+		if (!snapshot.isFile() || !source.isFile()) {
+			return false;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)))) {
+			return in.readInt() == MAGIC && in.readInt() == VERSION && in.readLong() == source.length()
+					&& in.readLong() == source.lastModified() && in.readInt() == firstYear
+					&& in.readInt() == columns;
+		} catch (IOException e) {
+			return false; // broken snapshot is the same as stale one
+		}
+	}
+
+	/* Method: read(store) */
+	/**
+	 * Maps the snapshot and adds all of its names and ranks to the store. Call
+	 * it only when isFresh returns true.
+	 */
+	public void read(NameSurferStore store) throws IOException {
+		try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.position(4 * 2 + 8 * 2 + 4 * 2); // header was checked by isFresh
+			int count = buffer.getInt();
+			byte[] nameBytes = new byte[256];
+			int[] rows = new int[count];
+			for (int i = 0; i < count; i++) {
+				int length = buffer.getShort() & 0xFFFF;
+				if (length > nameBytes.length) {
+					nameBytes = new byte[length];
+				}
+				buffer.get(nameBytes, 0, length);
+				rows[i] = store.addName(new String(nameBytes, 0, length, StandardCharsets.UTF_8));
+			}
+			ShortBuffer ranks = buffer.asShortBuffer();
+			short[] row = new short[columns];
+			for (int i = 0; i < count; i++) {
+				ranks.get(row); // one bulk read per name
+				for (int j = 0; j < columns; j++) {
+					store.setRank(rows[i], j, row[j] & 0xFFFF);
+				}
+			}
+		}
+	}
+
+	/* Method: write(store, sourceLength, sourceModified) */
+	/**
+	 * Writes the store into the snapshot. Length and modification time must be
+	 * those the text file had before it was parsed, so a file changed while it
+	 * was being parsed makes the snapshot stale instead of stamping old data
+	 * as fresh. The file is written under another name first and then
+	 * renamed, so nobody reads a half-written snapshot.
+	 */
+	public void write(NameSurferStore store, long sourceLength, long sourceModified) throws IOException {
+		File temp = new File(snapshot.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(sourceLength);
+			out.writeLong(sourceModified);
+			out.writeInt(firstYear);
+			out.writeInt(columns);
+			out.writeInt(store.size());
+			for (int row = 0; row < store.size(); row++) {
+				byte[] name = store.getName(row).getBytes(StandardCharsets.UTF_8);
+				if (name.length > 0xFFFF) {
+					throw new IOException("Name of " + name.length + " bytes doesn't fit in a snapshot");
+				}
+				out.writeShort(name.length);
+				out.write(name);
+			}
+			for (int row = 0; row < store.size(); row++) {
+				for (int j = 0; j < columns; j++) {
+					int rank = store.getRank(row, j);
+					if (rank > 0xFFFF) {
+						throw new IOException("Rank " + rank + " doesn't fit in a snapshot");
+					}
+					out.writeChar(rank); // unsigned, ranks up to 65535 fit
+				}
+			}
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+		Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,19 @@
+/*
+ * File: NameSurferStorageMode.java
+ * --------------------------------
+ * This enum lists the ways NameSurferDataBase can keep ranks in
+ * memory once the data file is read. Lookups give the same answers
+ * in both, SPARSE takes less memory and DENSE is a bit faster.
+ */
+
+public enum NameSurferStorageMode {
+
+	/** Keeps every rank, 0s too, in one matrix of 16-bit numbers */
+	DENSE,
+
+	/**
+	 * Keeps a bit for every rank which tells if name was ranked, and only the
+	 * ranks which are not 0
+	 */
+	SPARSE
+}
@@ -0,0 +1,596 @@
+/*
+ * File: NameSurferStore.java
+ * --------------------------
+ * This class is the in-memory store behind NameSurferDataBase.
+ * Every line of the data file is parsed exactly once, when it is
+ * added, into one big matrix of ranks (one row per name, one
+ * column per decade, or per year in datasets with yearly ranks).
+ * Ranks are small numbers, so the matrix keeps them in 16 bits
+ * (a char array) and switches to ints only if a rank doesn't fit,
+ * which halves memory of big yearly datasets. Names are looked up
+ * through an index from lowercased name to row, and NameSurferEntry
+ * objects are only lightweight views over a row of the matrix.
+ *
+ * When loading is done, the store can be compacted into a sparse
+ * form: one bit per rank says if the name was ranked in that
+ * column, and only ranks which are not 0 are kept, one after
+ * another. More than half of ranks of names-data.txt are 0. To
+ * find a rank, ranked bits before it are counted, starting from
+ * the first row of its block of SPARSE_BLOCK rows, whose first
+ * rank position is remembered, so getRank stays constant time.
+ *
+ * When loading is done, the store is frozen: arrays are trimmed to
+ * the number of names and nothing can be changed any more. The
+ * HashMap of lowercased names is then replaced by an open addressing
+ * table of rows, in which names are hashed and compared letter by
+ * letter ignoring case, so a lookup needs no lowercased copy of the
+ * name and may even look at a piece of a bigger text. A frozen
+ * store is only read, so any number of threads can read it at once
+ * without locks, as long as it was handed to them safely (the
+ * database does it through its latches).
+ */
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class NameSurferStore implements NameSurferConstants {
+
+	// biggest rank which fits in 16 bits of ranks array
+	private static final int MAX_PACKED_RANK = Character.MAX_VALUE;
+	// rows in a block of sparse form which share one start position
+	private static final int SPARSE_BLOCK = 8;
+
+	/* Instance variables */
+	// names as they appear in the file, indexed by row
+	private String[] names;
+	// number of ranks every name has
+	private final int columns;
+	// ranks of all names, row after row (columns values per row)
+	private char[] ranks;
+	// the same matrix with int ranks, used instead of ranks once a rank
+	// bigger than MAX_PACKED_RANK is stored
+	private int[] wideRanks;
+	// sparse form (both matrices above are null then): bit of every column of
+	// every row, set if name was ranked in it
+	private long[] rankedBits;
+	// ranks which are not 0, row after row
+	private char[] sparseRanks;
+	// position in sparseRanks of the first rank of every block of rows
+	private int[] blockStart;
+	// lowercased name -> row in the matrix, while the store is loaded
+	private Map<String, Integer> rowOfName;
+	// when frozen, rows of names at slots given by hash of the name (-1 in
+	// empty slots), instead of rowOfName
+	private int[] rowTable;
+	// views over rows, created the first time somebody asks for them; atomic,
+	// so all threads which ask for a row get the same view
+	private AtomicReferenceArray<NameSurferEntry> entries;
+	// rows whose name appeared again later in the file
+	private final BitSet replaced = new BitSet();
+	// number of rows stored so far
+	private int size;
+	// biggest rank stored so far
+	private int maxRank;
+	// true once loading is done, then the store is only read
+	private boolean frozen;
+	// ranks of the line addLine is parsing, reused for every line
+	private int[] lineRanks;
+
+	/**
+	 * Creates a new empty store with room for the given number of names. The
+	 * store grows by itself if more names are added. Every name has NDECADES
+	 * ranks.
+	 */
+	public NameSurferStore(int expectedNames) {
+		this(expectedNames, NDECADES);
+	}
+
+	/**
+	 * Creates a new empty store in which every name has the given number of
+	 * ranks.
+	 */
+	public NameSurferStore(int expectedNames, int columns) {
+		int capacity = Math.max(expectedNames, 16);
+		this.columns = columns;
+		names = new String[capacity];
+		ranks = new char[capacity * columns];
+		entries = new AtomicReferenceArray<>(capacity);
+		rowOfName = new HashMap<>(capacity * 2);
+	}
+
+	/* Method: addLine(line) */
+	/**
+	 * Parses a data line ("Name r1 r2 ... rN") and stores it as a new row.
+	 * Returns the row of the name, or -1 if the line is empty. Throws
+	 * IllegalArgumentException if a rank is missing or is not a number, and
+	 * then nothing is stored. Anything after the last rank is ignored.
+	 */
+	public int addLine(String line) {
+		int length = line.length();
+		int pos = skipSpaces(line, 0);
+		int nameStart = pos;
+		while (pos < length && !Character.isWhitespace(line.charAt(pos))) {
+			pos++;
+		}
+		if (pos == nameStart) {
+			return -1; // nothing on this line
+		}
+		String name = line.substring(nameStart, pos);
+		if (lineRanks == null) {
+			lineRanks = new int[columns];
+		}
+		int[] ranks = lineRanks;
+		for (int i = 0; i < columns; i++) {
+			ranks[i] = 0;
+			pos = skipSpaces(line, pos);
+			int start = pos;
+			while (pos < length && line.charAt(pos) >= '0' && line.charAt(pos) <= '9') {
+				ranks[i] = ranks[i] * 10 + (line.charAt(pos) - '0');
+				pos++;
+			}
+			if (pos == start && pos == length) {
+				throw new IllegalArgumentException("expected " + columns + " ranks of " + name + ", found " + i);
+			}
+			if (pos == start || (pos < length && !Character.isWhitespace(line.charAt(pos)))) {
+				throw new IllegalArgumentException("rank " + (i + 1) + " of " + name + " is not a number");
+			}
+		}
+		int row = addName(name);
+		for (int i = 0; i < columns; i++) {
+			setRank(row, i, ranks[i]);
+		}
+		return row;
+	}
+
+	/* Method: addName(name) */
+	/**
+	 * Reserves a new row for the name and returns it. All ranks of the row are
+	 * 0 until they are set with setRank. This is used by readers which parse
+	 * ranks themselves, without building a line first.
+	 */
+	public int addName(String name) {
+		checkWritable();
+		return newRow(name);
+	}
+
+	/* Method: setRank(row, decade, rank) */
+	/**
+	 * Sets rank of the name in the row for the given decade.
+	 */
+	public void setRank(int row, int decade, int rank) {
+		checkWritable();
+		if (rank > maxRank) {
+			maxRank = rank;
+		}
+		if (wideRanks != null) {
+			wideRanks[row * columns + decade] = rank;
+		} else if (rank >= 0 && rank <= MAX_PACKED_RANK) {
+			ranks[row * columns + decade] = (char) rank;
+		} else {
+			widen();
+			wideRanks[row * columns + decade] = rank;
+		}
+	}
+
+	private void checkWritable() {
+		if (rankedBits != null) {
+			throw new IllegalStateException("Compacted store can't be changed");
+		}
+		if (frozen) {
+			throw new IllegalStateException("Frozen store can't be changed");
+		}
+	}
+
+	/*
+	 * Copies ranks into int matrix, it happens at most once
+	 */
+	private void widen() {
+		wideRanks = new int[ranks.length];
+		for (int i = 0; i < ranks.length; i++) {
+			wideRanks[i] = ranks[i];
+		}
+		ranks = null;
+	}
+
+	private int skipSpaces(String line, int pos) {
+		while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+
+	/*
+	 * Reserves a new row for the name and registers it in the index. If the
+	 * same name appears twice, the later line wins, just like it did when raw
+	 * lines were kept in a HashMap.
+	 */
+	private int newRow(String name) {
+		if (size == names.length) {
+			grow();
+		}
+		int row = size++;
+		names[row] = name;
+		Integer oldRow = rowOfName.put(name.toLowerCase(), row);
+		if (oldRow != null) {
+			replaced.set(oldRow);
+		}
+		return row;
+	}
+
+	private void grow() {
+		ensureCapacity(names.length * 2);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= names.length) {
+			return;
+		}
+		names = Arrays.copyOf(names, capacity);
+		if (wideRanks != null) {
+			wideRanks = Arrays.copyOf(wideRanks, capacity * columns);
+		} else {
+			ranks = Arrays.copyOf(ranks, capacity * columns);
+		}
+		entries = copyOf(entries, capacity);
+	}
+
+	private static AtomicReferenceArray<NameSurferEntry> copyOf(AtomicReferenceArray<NameSurferEntry> views,
+			int length) {
+		AtomicReferenceArray<NameSurferEntry> copy = new AtomicReferenceArray<>(length);
+		for (int row = Math.min(length, views.length()) - 1; row >= 0; row--) {
+			copy.set(row, views.get(row));
+		}
+		return copy;
+	}
+
+	/* Method: reserve(names) */
+	/**
+	 * Makes room for the given number of names in all, so adding them doesn't
+	 * copy the arrays again. Call it before adding many rows whose number is
+	 * known, like all parsed pieces of a file.
+	 */
+	public void reserve(int names) {
+		checkWritable();
+		ensureCapacity(names);
+	}
+
+	/* Method: addAll(other) */
+	/**
+	 * Appends all rows of other store after rows of this one and returns the
+	 * row which the first row of other got. Names of other store win over
+	 * same names already stored here, as if its lines came later in the file.
+	 */
+	public int addAll(NameSurferStore other) {
+		checkWritable();
+		if (other.rankedBits != null) {
+			throw new IllegalArgumentException("Compacted store can't be added");
+		}
+		if (other.columns != columns) {
+			throw new IllegalArgumentException("Stores have different number of columns");
+		}
+		int firstRow = size;
+		if (size + other.size > names.length) {
+			// grows by at least half, so adding many small stores copies little
+			ensureCapacity(Math.max(size + other.size, names.length + names.length / 2));
+		}
+		System.arraycopy(other.names, 0, names, size, other.size);
+		if (other.wideRanks != null && wideRanks == null) {
+			widen();
+		}
+		if (wideRanks == null) {
+			System.arraycopy(other.ranks, 0, ranks, size * columns, other.size * columns);
+		} else if (other.wideRanks != null) {
+			System.arraycopy(other.wideRanks, 0, wideRanks, size * columns, other.size * columns);
+		} else {
+			for (int i = 0; i < other.size * columns; i++) {
+				wideRanks[size * columns + i] = other.ranks[i];
+			}
+		}
+		for (Map.Entry<String, Integer> entry : other.rowOfName.entrySet()) {
+			Integer oldRow = rowOfName.put(entry.getKey(), firstRow + entry.getValue());
+			if (oldRow != null) {
+				replaced.set(oldRow);
+			}
+		}
+		for (int row = other.replaced.nextSetBit(0); row >= 0; row = other.replaced.nextSetBit(row + 1)) {
+			replaced.set(firstRow + row);
+		}
+		size += other.size;
+		maxRank = Math.max(maxRank, other.maxRank);
+		return firstRow;
+	}
+
+	/* Method: findRow(name) */
+	/**
+	 * Returns the row of the name, or -1 if it is not stored. Case of the name
+	 * doesn't matter.
+	 */
+	public int findRow(String name) {
+		if (rowTable != null) {
+			return findRow(name, 0, name.length());
+		}
+		Integer row = rowOfName.get(name.toLowerCase());
+		return (row == null) ? -1 : row;
+	}
+
+	/* Method: findRow(text, start, end) */
+	/**
+	 * Returns the row of the name which is the piece of text from start
+	 * (included) to end (not included), or -1 if it is not stored. Case
+	 * doesn't matter. Once the store is frozen, nothing is allocated.
+	 */
+	public int findRow(CharSequence text, int start, int end) {
+		if (rowTable == null) {
+			return findRow(text.subSequence(start, end).toString());
+		}
+		int mask = rowTable.length - 1;
+		for (int slot = hash(text, start, end) & mask;; slot = (slot + 1) & mask) {
+			int row = rowTable[slot];
+			if (row < 0 || sameName(names[row], text, start, end)) {
+				return row;
+			}
+		}
+	}
+
+	/*
+	 * Hash of lowercased letters, mixed so that similar names don't end up
+	 * in neighbouring slots
+	 */
+	private static int hash(CharSequence text, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + Character.toLowerCase(text.charAt(i));
+		}
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean sameName(String name, CharSequence text, int start, int end) {
+		if (name.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char a = name.charAt(i);
+			char b = text.charAt(start + i);
+			if (a != b && Character.toLowerCase(a) != Character.toLowerCase(b)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* Method: isReplaced(row) */
+	/**
+	 * Returns true if the name of the row appears again in a later row. Such
+	 * rows are not part of database any more, lookups find the later one.
+	 */
+	public boolean isReplaced(int row) {
+		return replaced.get(row);
+	}
+
+	/* Method: getEntry(row) */
+	/**
+	 * Returns the NameSurferEntry view of a row. The same object is returned
+	 * every time for the same row, so repeated lookups don't allocate. Two
+	 * threads may both create the view of a row at the same time, then the
+	 * one which is published first is returned to both of them.
+	 */
+	public NameSurferEntry getEntry(int row) {
+		NameSurferEntry entry = entries.get(row);
+		if (entry == null) {
+			entry = new NameSurferEntry(this, row);
+			if (!entries.compareAndSet(row, null, entry)) {
+				entry = entries.get(row); // other thread was first
+			}
+		}
+		return entry;
+	}
+
+	/* Method: getName(row) */
+	/**
+	 * Returns the name stored in the row, as it appears in the data file.
+	 */
+	public String getName(int row) {
+		return names[row];
+	}
+
+	/* Method: getRank(row, decade) */
+	/**
+	 * Returns rank of the name in the row for the given decade (0 if the name
+	 * was not ranked).
+	 */
+	public int getRank(int row, int decade) {
+		if (ranks != null) {
+			return ranks[row * columns + decade];
+		}
+		if (wideRanks != null) {
+			return wideRanks[row * columns + decade];
+		}
+		long bit = (long) row * columns + decade;
+		if ((rankedBits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+			return 0;
+		}
+		long blockFirstBit = (long) (row - row % SPARSE_BLOCK) * columns;
+		return sparseRanks[blockStart[row / SPARSE_BLOCK] + countBits(blockFirstBit, bit)];
+	}
+
+	/*
+	 * Counts set bits of rankedBits from bit from (included) to bit to (not
+	 * included)
+	 */
+	private int countBits(long from, long to) {
+		int first = (int) (from >>> 6);
+		int last = (int) (to >>> 6);
+		if (first == last) {
+			return Long.bitCount(rankedBits[first] & (-1L << from) & ((1L << to) - 1));
+		}
+		int count = Long.bitCount(rankedBits[first] & (-1L << from));
+		for (int i = first + 1; i < last; i++) {
+			count += Long.bitCount(rankedBits[i]);
+		}
+		return count + Long.bitCount(rankedBits[last] & ((1L << to) - 1));
+	}
+
+	/* Method: compact() */
+	/**
+	 * Converts the store into sparse form, which keeps only ranks that are not
+	 * 0. After that nothing can be added to the store. Returns false, and
+	 * leaves store as it is, if some rank doesn't fit in 16 bits.
+	 */
+	public boolean compact() {
+		if (rankedBits != null) {
+			return true;
+		}
+		if (frozen) {
+			throw new IllegalStateException("Frozen store can't be compacted");
+		}
+		if (ranks == null) {
+			return false; // wide ranks
+		}
+		int ranked = 0;
+		for (int i = 0; i < size * columns; i++) {
+			if (ranks[i] != 0) {
+				ranked++;
+			}
+		}
+		long[] bits = new long[(int) (((long) size * columns + 63) / 64)];
+		char[] values = new char[ranked];
+		int[] starts = new int[(size + SPARSE_BLOCK - 1) / SPARSE_BLOCK];
+		int position = 0;
+		for (int row = 0; row < size; row++) {
+			if (row % SPARSE_BLOCK == 0) {
+				starts[row / SPARSE_BLOCK] = position;
+			}
+			for (int d = 0; d < columns; d++) {
+				char rank = ranks[row * columns + d];
+				if (rank != 0) {
+					long bit = (long) row * columns + d;
+					bits[(int) (bit >>> 6)] |= 1L << bit;
+					values[position++] = rank;
+				}
+			}
+		}
+		rankedBits = bits;
+		sparseRanks = values;
+		blockStart = starts;
+		ranks = null;
+		return true;
+	}
+
+	/* Method: freeze() */
+	/**
+	 * Marks the end of loading. Arrays are trimmed to the number of names, so
+	 * no memory is wasted on room for names which will never come, and after
+	 * that nothing can be added, changed or compacted.
+	 */
+	public void freeze() {
+		if (frozen) {
+			return;
+		}
+		names = Arrays.copyOf(names, size);
+		entries = copyOf(entries, size);
+		if (ranks != null) {
+			ranks = Arrays.copyOf(ranks, size * columns);
+		} else if (wideRanks != null) {
+			wideRanks = Arrays.copyOf(wideRanks, size * columns);
+		}
+		buildRowTable();
+		frozen = true;
+	}
+
+	/*
+	 * Puts every row which is not replaced into a table at most half full,
+	 * then HashMap with its lowercased names and boxed rows can go
+	 */
+	private void buildRowTable() {
+		int capacity = Integer.highestOneBit(Math.max(1, rowOfName.size()) * 2 - 1) * 2;
+		int[] table = new int[capacity];
+		Arrays.fill(table, -1);
+		for (int row = 0; row < size; row++) {
+			if (!replaced.get(row)) {
+				int slot = hash(names[row], 0, names[row].length()) & (capacity - 1);
+				while (table[slot] >= 0) {
+					slot = (slot + 1) & (capacity - 1);
+				}
+				table[slot] = row;
+			}
+		}
+		rowTable = table;
+		rowOfName = null;
+	}
+
+	/* Method: isFrozen() */
+	/**
+	 * Returns true if loading is done and the store can only be read.
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/* Method: isCompacted() */
+	/**
+	 * Returns true if the store is in sparse form.
+	 */
+	public boolean isCompacted() {
+		return rankedBits != null;
+	}
+
+	/* Method: estimateRankMemory() */
+	/**
+	 * Returns how many bytes of heap the ranks take, in the form they are
+	 * stored now.
+	 */
+	public long estimateRankMemory() {
+		if (rankedBits != null) {
+			return 48L + 8L * rankedBits.length + 2L * sparseRanks.length + 4L * blockStart.length;
+		}
+		return 16L + ((wideRanks != null) ? 4L * wideRanks.length : 2L * ranks.length);
+	}
+
+	/* Method: getMaxRank() */
+	/**
+	 * Returns the biggest rank which was ever set, 0 if there is none.
+	 */
+	public int getMaxRank() {
+		return maxRank;
+	}
+
+	/* Method: getColumns() */
+	/**
+	 * Returns the number of ranks every name has.
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/* Method: estimateMemory() */
+	/**
+	 * Returns roughly how many bytes of heap the store takes: the arrays, the
+	 * names and the index from name to row. Views which were already handed
+	 * out are counted too.
+	 */
+	public long estimateMemory() {
+		long bytes = 16L + 8L * names.length + estimateRankMemory() + 8L * entries.length();
+		for (int row = 0; row < size; row++) {
+			// name (object, array, one byte per letter)
+			bytes += 40 + names[row].length();
+			if (rowOfName != null) {
+				// its lowercased copy, node of HashMap and boxed row
+				bytes += 40 + names[row].length() + 32 + 16;
+			}
+			if (entries.get(row) != null) {
+				bytes += 32;
+			}
+		}
+		long index = (rowOfName != null) ? 8L * rowOfName.size() * 2 : 16L + 4L * rowTable.length;
+		return bytes + index + replaced.size() / 8;
+	}
+
+	/* Method: size() */
+	/**
+	 * Returns the number of names in the store.
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * File: NameSurferStress.java
+ * ---------------------------
+ * This program checks that one NameSurferDataBase can answer
+ * queries from many threads at once, and measures how throughput
+ * grows with the number of threads. It loads a synthetic file with
+ * as many names as the first argument says (default is 1000000),
+ * then runs the same mix of queries (mostly exact lookups, some
+ * top-N and rank range queries and suggestions) on 1, 2, 4, ...
+ * threads up to the second argument (default is the number of
+ * processors), each for the number of seconds the third argument
+ * says (default is 3). Every answer is checked against answers
+ * computed on one thread before, so a wrong answer under load is
+ * reported, not just counted. Reads take no locks, so on a machine
+ * with enough cores queries per second should grow almost in
+ * proportion to threads. Run it with
+ * java -Xmx2g NameSurferStress [numberOfNames] [maxThreads] [seconds]
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class NameSurferStress implements NameSurferConstants {
+
+	// width of rank ranges which are queried
+	private static final int RANGE = 5;
+
+	/* Instance variables */
+	private NameSurferDataBase base;
+	private int numberOfNames;
+	// answers computed on one thread: rank of every name in every decade
+	private int[][] expectedRanks;
+	// and number of names ranked in every decade
+	private int[] expectedRanked;
+	// wrong answers seen by all threads
+	private AtomicLong errors = new AtomicLong();
+	// threads stop when it is true
+	private volatile boolean stop;
+
+	public static void main(String[] args) throws Exception {
+		int numberOfNames = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+		int maxThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 3;
+		File file = File.createTempFile("names-stress", ".txt");
+		file.deleteOnExit();
+		NameSurferBenchmark.writeSyntheticFile(file, numberOfNames);
+		NameSurferStress stress = new NameSurferStress(
+				new NameSurferDataBase(file.getPath(), NameSurferLoadMode.MAPPED), numberOfNames);
+		System.out.println(numberOfNames + " names, " + Runtime.getRuntime().availableProcessors() + " processors");
+		double single = 0;
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			stress.run(threads, seconds); // warms up the JIT
+			double perSecond = stress.run(threads, seconds);
+			if (threads == 1) {
+				single = perSecond;
+			}
+			double speedup = perSecond / single;
+			System.out.printf("%3d threads %12.0f queries/s  speedup %5.2f  efficiency %4.0f%%%n", threads, perSecond,
+					speedup, 100 * speedup / threads);
+		}
+		System.out.println(stress.errors.get() + " wrong answers");
+		file.delete();
+		if (stress.errors.get() > 0) {
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * Remembers answers of all queries, computed on this thread only
+	 */
+	private NameSurferStress(NameSurferDataBase base, int numberOfNames) {
+		this.base = base;
+		this.numberOfNames = numberOfNames;
+		expectedRanks = new int[numberOfNames][];
+		for (int i = 0; i < numberOfNames; i++) {
+			NameSurferEntry entry = base.findEntry(NameSurferBenchmark.syntheticName(i));
+			expectedRanks[i] = new int[NDECADES];
+			for (int decade = 0; decade < NDECADES; decade++) {
+				expectedRanks[i][decade] = entry.getRank(decade);
+			}
+		}
+		expectedRanked = new int[NDECADES];
+		for (int decade = 0; decade < NDECADES; decade++) {
+			expectedRanked[decade] = base.rangeByRank(decade, 1, Integer.MAX_VALUE).length;
+		}
+	}
+
+	/*
+	 * Runs threads for the given number of seconds and returns how many
+	 * queries all of them answered per second
+	 */
+	private double run(int threads, int seconds) throws Exception {
+		stop = false;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CountDownLatch started = new CountDownLatch(threads);
+		List<Future<Long>> counts = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			long seed = t;
+			counts.add(pool.submit(() -> {
+				started.countDown();
+				started.await(); // all threads start together
+				return query(new Random(seed));
+			}));
+		}
+		started.await();
+		long start = System.nanoTime();
+		Thread.sleep(seconds * 1000L);
+		stop = true;
+		long queries = 0;
+		for (Future<Long> count : counts) {
+			queries += count.get();
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		pool.shutdown();
+		return queries / elapsed;
+	}
+
+	/*
+	 * Asks random queries until stopped and returns how many were asked.
+	 * Every answer is checked
+	 */
+	private long query(Random random) {
+		long queries = 0;
+		while (!stop) {
+			int kind = random.nextInt(100);
+			int decade = random.nextInt(NDECADES);
+			if (kind < 80) {
+				checkLookup(random.nextInt(numberOfNames));
+			} else if (kind < 90) {
+				checkRanks(base.topN(decade, TOP_NAMES), decade, 1, Integer.MAX_VALUE,
+						Math.min(TOP_NAMES, expectedRanked[decade]));
+			} else if (kind < 98) {
+				int lo = 1 + random.nextInt(base.getDataSet().getMaxRank());
+				checkRanks(base.rangeByRank(decade, lo, lo + RANGE - 1), decade, lo, lo + RANGE - 1, -1);
+			} else {
+				String name = NameSurferBenchmark.syntheticName(random.nextInt(numberOfNames));
+				String prefix = name.substring(0, Math.min(3, name.length()));
+				for (String suggestion : base.suggest(prefix, SUGGESTIONS)) {
+					if (!suggestion.toLowerCase().startsWith(prefix.toLowerCase())) {
+						errors.incrementAndGet();
+					}
+				}
+			}
+			queries++;
+		}
+		return queries;
+	}
+
+	private void checkLookup(int i) {
+		String name = NameSurferBenchmark.syntheticName(i);
+		NameSurferEntry entry = base.findEntry(name);
+		if (entry == null || !entry.getName().equals(name)) {
+			errors.incrementAndGet();
+			return;
+		}
+		for (int decade = 0; decade < NDECADES; decade++) {
+			if (entry.getRank(decade) != expectedRanks[i][decade]) {
+				errors.incrementAndGet();
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Entries must be sorted by rank and have ranks from lo to hi. If count is
+	 * not -1, there must be exactly that many of them
+	 */
+	private void checkRanks(NameSurferEntry[] entries, int decade, int lo, int hi, int count) {
+		if (count != -1 && entries.length != count) {
+			errors.incrementAndGet();
+			return;
+		}
+		int previous = lo;
+		for (NameSurferEntry entry : entries) {
+			int rank = entry.getRank(decade);
+			if (rank < previous || rank > hi) {
+				errors.incrementAndGet();
+				return;
+			}
+			previous = rank;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * File: NameSurferSuggestions.java
+ * --------------------------------
+ * This class adds type-ahead to a JTextField. While user types, a
+ * small popup under the text field shows names from the database
+ * which start with what was typed so far. Clicking a suggestion
+ * puts it in the text field.
+ */
+
+import java.awt.event.*;
+import java.util.List;
+
+import javax.swing.*;
+import javax.swing.event.*;
+
+public class NameSurferSuggestions implements NameSurferConstants, DocumentListener {
+
+	/* Instance variables */
+	private JTextField textField;
+	private NameSurferDataBase base;
+	private JPopupMenu popup = new JPopupMenu();
+	// true while we change text ourselves, so we don't suggest again
+	private boolean filling;
+
+	/**
+	 * Attaches suggestions of the database to the text field.
+	 */
+	public NameSurferSuggestions(JTextField textField, NameSurferDataBase base) {
+		this.textField = textField;
+		this.base = base;
+		popup.setFocusable(false); // user keeps typing in text field
+		textField.getDocument().addDocumentListener(this);
+		textField.addFocusListener(new FocusAdapter() {
+			public void focusLost(FocusEvent e) {
+				popup.setVisible(false);
+			}
+		});
+	}
+
+	/* Method: setDataBase(base) */
+	/**
+	 * Makes suggestions come from another database, after user switched
+	 * datasets.
+	 */
+	public void setDataBase(NameSurferDataBase base) {
+		this.base = base;
+	}
+
+	/*
+	 * Popup can't be changed while document is being changed, so we do it
+	 * right after
+	 */
+	private void textChanged() {
+		if (!filling) {
+			SwingUtilities.invokeLater(this::showSuggestions);
+		}
+	}
+
+	private void showSuggestions() {
+		popup.setVisible(false);
+		popup.removeAll();
+		String prefix = textField.getText().trim();
+		if (prefix.isEmpty() || !textField.isShowing()) {
+			return;
+		}
+		List<String> names = base.suggest(prefix, SUGGESTIONS);
+		if (names.size() == 1 && names.get(0).equalsIgnoreCase(prefix)) {
+			return; // user already typed the whole name
+		}
+		for (String name : names) {
+			JMenuItem item = new JMenuItem(name);
+			item.addActionListener(e -> fill(name));
+			popup.add(item);
+		}
+		if (!names.isEmpty()) {
+			popup.show(textField, 0, textField.getHeight());
+		}
+	}
+
+	private void fill(String name) {
+		filling = true;
+		textField.setText(name);
+		filling = false;
+		popup.setVisible(false);
+		textField.requestFocusInWindow();
+	}
+
+	/* Implementation of the DocumentListener interface */
+	public void insertUpdate(DocumentEvent e) {
+		textChanged();
+	}
+
+	public void removeUpdate(DocumentEvent e) {
+		textChanged();
+	}
+
+	public void changedUpdate(DocumentEvent e) {
+	}
+}
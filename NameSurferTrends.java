@@ -0,0 +1,175 @@
+/*
+ * File: NameSurferTrends.java
+ * ---------------------------
+ * This class tells how names moved between decades. All rows of
+ * NameSurferStore are walked once, when it is created, and for
+ * every name it remembers its slope (how many places per decade
+ * it climbed, on average), its volatility (how much it jumped up
+ * and down from decade to decade) and the decade of its best
+ * rank. Everything is kept in primitive arrays indexed by row.
+ * A decade in which a name was not ranked counts as the max rank
+ * of the dataset + 1, so a name which appears in the list is a riser.
+ */
+
+public class NameSurferTrends implements NameSurferConstants {
+
+	/* Instance variables */
+	private final NameSurferStore store;
+	// rank counted for a decade in which name was not ranked
+	private final int unranked;
+	// places climbed per decade, least squares line through all decades
+	private final float[] slope;
+	// standard deviation of decade-over-decade changes
+	private final float[] volatility;
+	// decade of the best rank, -1 if name was never ranked
+	private final short[] peakDecade;
+
+	/**
+	 * Computes trends of every name in the store, whose ranks go up to
+	 * maxRank.
+	 */
+	public NameSurferTrends(NameSurferStore store, int maxRank) {
+		this.store = store;
+		unranked = maxRank + 1;
+		int size = store.size();
+		int columns = store.getColumns();
+		slope = new float[size];
+		volatility = new float[size];
+		peakDecade = new short[size];
+		// weights of least squares slope, they are the same for every row
+		float[] weights = new float[columns];
+		float middle = (columns - 1) / 2f;
+		float sumOfSquares = 0;
+		for (int d = 0; d < columns; d++) {
+			sumOfSquares += (d - middle) * (d - middle);
+		}
+		for (int d = 0; d < columns; d++) {
+			weights[d] = (columns > 1) ? (d - middle) / sumOfSquares : 0;
+		}
+		for (int row = 0; row < size; row++) {
+			float rowSlope = 0;
+			int sumOfChanges = 0;
+			long sumOfSquaredChanges = 0;
+			int peak = -1;
+			int peakRank = unranked;
+			int previous = 0;
+			for (int d = 0; d < columns; d++) {
+				int rank = rankOf(row, d);
+				rowSlope -= weights[d] * rank; // smaller rank is higher, so minus
+				if (rank < peakRank) {
+					peakRank = rank;
+					peak = d;
+				}
+				if (d > 0) {
+					int change = previous - rank;
+					sumOfChanges += change;
+					sumOfSquaredChanges += change * change;
+				}
+				previous = rank;
+			}
+			slope[row] = rowSlope;
+			if (columns > 1) {
+				float mean = sumOfChanges / (float) (columns - 1);
+				float variance = sumOfSquaredChanges / (float) (columns - 1) - mean * mean;
+				volatility[row] = (float) Math.sqrt(Math.max(0, variance));
+			}
+			peakDecade[row] = (short) peak;
+		}
+	}
+
+	/*
+	 * Returns rank of row in decade, with unranked instead of 0
+	 */
+	private int rankOf(int row, int decade) {
+		int rank = store.getRank(row, decade);
+		return (rank == 0) ? unranked : rank;
+	}
+
+	/* Method: risers(firstDecade, lastDecade, k) */
+	/**
+	 * Returns at most k names which climbed the most places from firstDecade
+	 * to lastDecade, biggest climb first. Ranks of the ranking are the number
+	 * of places climbed. Names which didn't climb are left out.
+	 */
+	public NameSurferRanking risers(int firstDecade, int lastDecade, int k) {
+		return biggestChanges(firstDecade, lastDecade, k, 1);
+	}
+
+	/* Method: fallers(firstDecade, lastDecade, k) */
+	/**
+	 * Returns at most k names which fell the most places from firstDecade to
+	 * lastDecade, biggest fall first. Ranks of the ranking are the number of
+	 * places fallen. Names which didn't fall are left out.
+	 */
+	public NameSurferRanking fallers(int firstDecade, int lastDecade, int k) {
+		return biggestChanges(firstDecade, lastDecade, k, -1);
+	}
+
+	/*
+	 * Keeps k biggest changes in a bounded heap. Heap keeps smallest keys, so
+	 * the change is stored with minus sign. Direction is 1 for rising, -1 for
+	 * falling
+	 */
+	private NameSurferRanking biggestChanges(int firstDecade, int lastDecade, int k, int direction) {
+		NameSurferRankHeap heap = new NameSurferRankHeap(Math.max(0, k));
+		for (int row = 0; row < store.size(); row++) {
+			int change = direction * (rankOf(row, firstDecade) - rankOf(row, lastDecade));
+			if (change > 0 && !store.isReplaced(row)) {
+				heap.offer(row, -change);
+			}
+		}
+		int[] rows = heap.sortedRows();
+		NameSurferEntry[] entries = new NameSurferEntry[rows.length];
+		int[] changes = new int[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			entries[i] = store.getEntry(rows[i]);
+			changes[i] = direction * (rankOf(rows[i], firstDecade) - rankOf(rows[i], lastDecade));
+		}
+		return new NameSurferRanking(entries, changes);
+	}
+
+	/* Method: getChange(name, decade) */
+	/**
+	 * Returns how many places the name climbed from the decade before to the
+	 * given one (negative if it fell). It is 0 for the first decade and for
+	 * names which are not in the database.
+	 */
+	public int getChange(String name, int decade) {
+		int row = store.findRow(name);
+		if (row < 0 || decade <= 0 || decade >= store.getColumns()) {
+			return 0;
+		}
+		return rankOf(row, decade - 1) - rankOf(row, decade);
+	}
+
+	/* Method: getSlope(name) */
+	/**
+	 * Returns how many places per decade the name climbed on average
+	 * (negative if it fell), or 0 if it is not in the database.
+	 */
+	public double getSlope(String name) {
+		int row = store.findRow(name);
+		return (row < 0) ? 0 : slope[row];
+	}
+
+	/* Method: getVolatility(name) */
+	/**
+	 * Returns how much changes of the name from decade to decade differ from
+	 * each other (standard deviation of them), or 0 if it is not in the
+	 * database. A name which climbs steadily has small volatility.
+	 */
+	public double getVolatility(String name) {
+		int row = store.findRow(name);
+		return (row < 0) ? 0 : volatility[row];
+	}
+
+	/* Method: getPeakDecade(name) */
+	/**
+	 * Returns the decade in which name had its best rank (the first one if
+	 * there are more), or -1 if it was never ranked or is not in database.
+	 */
+	public int getPeakDecade(String name) {
+		int row = store.findRow(name);
+		return (row < 0) ? -1 : peakDecade[row];
+	}
+}